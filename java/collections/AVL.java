@@ -1,11 +1,16 @@
+import java.util.function.Function;
+import java.util.function.BiFunction;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 
 public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K, V>> {
 
-    private static class Node<_K extends Comparable<? super _K>, _V> {
+    // package private: the augmented trees extend it and override update() to keep more per subtree
+    static class Node<_K extends Comparable<? super _K>, _V> {
         Entry<_K, _V> entry;
         Node<_K, _V> left, right;
         int height;
+        int size = 1; // nodes in the subtree rooted here
 
         Node(_K key, _V value) {
 	    entry = new Entry<_K, _V>(key, value);
@@ -25,13 +30,23 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
            return getHeight(root.left) - getHeight(root.right);
         }
 
+        static int getSize(Node<?, ?> root) {
+            return root == null ? 0 : root.size;
+        }
+
+        // recomputes what depends on the children, the rotations and fixup call it bottom up
+        void update() {
+            height = 1 + Math.max(getHeight(left), getHeight(right));
+            size = 1 + getSize(left) + getSize(right);
+        }
+
 	private Node<_K, _V> rotateClockwise() {
 	    Node<_K, _V> pivot = left;
 	    left = pivot.right;
 	    pivot.right = this;
 
-	    height = 1 + Math.max(Node.getHeight(left), Node.getHeight(right));
-	    pivot.height = 1 + Math.max(Node.getHeight(pivot.left), Node.getHeight(pivot.right));
+	    update();
+	    pivot.update();
 
 	    return pivot;
 	}
@@ -41,16 +56,32 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
 	    right = pivot.left;
 	    pivot.left = this;
 	    
-	    height = 1 + Math.max(Node.getHeight(left), Node.getHeight(right));
-	    pivot.height = 1 + Math.max(Node.getHeight(pivot.left), Node.getHeight(pivot.right));
+	    update();
+	    pivot.update();
 	    
 	    return pivot;
 	}
 
     }
 
-    private Node<K, V> root;
+    // an AVL tree with n nodes is less than 1.45 log2(n + 2) high, an int size never gets close to 64 levels
+    private static final int MAX_HEIGHT = 64;
+
+    Node<K, V> root;
     private int size;
+    // the nodes above the key of the last descent, root first. Reused by every insert and delete
+    private final Node<K, V>[] path = newPath();
+    private int depth;
+    // links, unlinks and relinks so far, and descents so far. The functions of computeIfAbsent, compute
+    // and merge run between a descent and its use: one that changed the tree invalidated the node and the
+    // path found before it, one that only walked down again left the path of another key
+    private int modCount;
+    private int descents;
+
+    @SuppressWarnings("unchecked")
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V>[] newPath() {
+        return (Node<_K, _V>[]) new Node<?, ?>[MAX_HEIGHT];
+    }
 
     public int size() {
 	return size;
@@ -78,39 +109,372 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
         return iter != null;
     }
 
-    public boolean add(K key, V value) {
-        int oldSize = size;
-        root = add(root, key, value);
-        return size > oldSize;
+    public V get(K key) {
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.entry.getKey().compareTo(key);
+            if (compare > 0) {
+                iter = iter.left;
+            } else if (compare < 0) {
+                iter = iter.right;
+            } else {
+                return iter.entry.getValue();
+            }
+        }
+        return null;
     }
 
-    public Node<K, V> add(Node<K, V> root, K key, V value) {
+    public Entry<K, V> first() {
         if (root == null) {
-            size++;
-            return new Node<K, V>(key, value);
+            return null;
         }
-        int compare = root.entry.getKey().compareTo(key);
-        if (compare > 0) {
-            root.left = add(root.left, key, value);
-        } else if (compare < 0) {
-            root.right = add(root.right, key, value);
+        var iter = root;
+        while (iter.left != null) {
+            iter = iter.left;
+        }
+        return iter.entry;
+    }
+
+    public Entry<K, V> last() {
+        if (root == null) {
+            return null;
+        }
+        var iter = root;
+        while (iter.right != null) {
+            iter = iter.right;
+        }
+        return iter.entry;
+    }
+
+    // greatest key <= 'key'
+    public Entry<K, V> floor(K key) {
+        return nearest(key, true, true);
+    }
+
+    // smallest key >= 'key'
+    public Entry<K, V> ceiling(K key) {
+        return nearest(key, false, true);
+    }
+
+    // greatest key < 'key'
+    public Entry<K, V> lower(K key) {
+        return nearest(key, true, false);
+    }
+
+    // smallest key > 'key'
+    public Entry<K, V> higher(K key) {
+        return nearest(key, false, false);
+    }
+
+    // single descent, remembering the last node seen on the right side of 'key'
+    private Entry<K, V> nearest(K key, boolean below, boolean inclusive) {
+        Entry<K, V> best = null;
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.entry.getKey().compareTo(key);
+            if (compare == 0 && inclusive) {
+                return iter.entry;
+            }
+            if (below ? compare < 0 : compare > 0) {
+                best = iter.entry;
+                iter = below ? iter.right : iter.left;
+            } else {
+                iter = below ? iter.left : iter.right;
+            }
+        }
+        return best;
+    }
+
+    // lazy in order visit of the keys in [from, to), a null bound leaves that side open.
+    // The iterator seeks 'from' in O(log n) and stops at 'to', so a scan costs O(log n + k)
+    public Iterable<Entry<K, V>> subMap(K from, K to) {
+        return new Iterable<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    Stack<Node<K, V>> stack = seek(from);
+
+                    @Override
+                    public boolean hasNext() {
+                        return !stack.isEmpty() && (to == null || stack.peek().entry.getKey().compareTo(to) < 0);
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        Node<K, V> current = stack.pop();
+                        for (var iter = current.right; iter != null; iter = iter.left) {
+                            stack.push(iter);
+                        }
+                        return current.entry;
+                    }
+                };
+            }
+        };
+    }
+
+    // keys < 'to'
+    public Iterable<Entry<K, V>> headMap(K to) {
+        return subMap(null, to);
+    }
+
+    // keys >= 'from'
+    public Iterable<Entry<K, V>> tailMap(K from) {
+        return subMap(from, null);
+    }
+
+    // the stack holds the nodes >= 'from' whose left subtree still has to be visited, the smallest on top
+    private Stack<Node<K, V>> seek(K from) {
+        Stack<Node<K, V>> stack = new Stack<>();
+        var iter = root;
+        while (iter != null) {
+            if (from == null || iter.entry.getKey().compareTo(from) >= 0) {
+                stack.push(iter);
+                iter = iter.left;
+            } else {
+                iter = iter.right;
+            }
+        }
+        return stack;
+    }
+
+    public boolean add(K key, V value) {
+        if (descend(key) != null) {
+            releasePath();
+            return false;
+        }
+        insertAtPath(key, value);
+        return true;
+    }
+
+    // returns the previous value, null if the key was missing
+    public V put(K key, V value) {
+        var node = descend(key);
+        if (node != null) {
+            V old = node.entry.getValue();
+            node.entry.setValue(value);
+            valueUpdated(node);
+            releasePath();
+            return old;
+        }
+        insertAtPath(key, value);
+        return null;
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> f) {
+        var node = descend(key);
+        if (node != null) {
+            releasePath();
+            return node.entry.getValue();
+        }
+        int mods = modCount, walks = descents;
+        V value = f.apply(key);
+        revalidate(key, null, mods, walks);
+        if (value != null) {
+            insertAtPath(key, value);
         } else {
-            var updated = new Node<K, V>(key, value);
-            updated.left = root.left;
-            updated.right = root.right;
+            releasePath();
+        }
+        return value;
+    }
 
-            root.left = null;
-            root.right = null;
-            return root;
+    // 'f' gets null when the key is missing, a null result removes the key
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> f) {
+        var node = descend(key);
+        int mods = modCount, walks = descents;
+        V value = f.apply(key, node == null ? null : node.entry.getValue());
+        node = revalidate(key, node, mods, walks);
+        if (node == null) {
+            if (value != null) {
+                insertAtPath(key, value);
+            } else {
+                releasePath();
+            }
+        } else if (value == null) {
+            deleteAtPath(node);
+        } else {
+            node.entry.setValue(value);
+            valueUpdated(node);
+            releasePath();
         }
-        return fixup(root);
+        return value;
+    }
+
+    // a null result from the remapping function removes the key
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> f) {
+        var node = descend(key);
+        if (node == null) {
+            insertAtPath(key, value);
+            return value;
+        }
+        int mods = modCount, walks = descents;
+        V merged = f.apply(node.entry.getValue(), value);
+        node = revalidate(key, node, mods, walks);
+        if (merged == null) {
+            deleteAtPath(node);
+        } else {
+            node.entry.setValue(merged);
+            valueUpdated(node);
+            releasePath();
+        }
+        return merged;
+    }
+
+    public boolean remove(K key) {
+        var node = descend(key);
+        if (node == null) {
+            releasePath();
+            return false;
+        }
+        deleteAtPath(node);
+        return true;
+    }
+
+    // walks down to 'key' recording the nodes above it in 'path', returns its node or null if it is missing
+    private Node<K, V> descend(K key) {
+        descents++;
+        depth = 0;
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.entry.getKey().compareTo(key);
+            if (compare == 0) {
+                return iter;
+            }
+            path[depth++] = iter;
+            iter = compare > 0 ? iter.left : iter.right;
+        }
+        return null;
+    }
+
+    // after a function of computeIfAbsent, compute or merge: 'node' and the path found before calling it
+    // are still good if it didn't touch the tree, found again if it only walked it
+    private Node<K, V> revalidate(K key, Node<K, V> node, int mods, int walks) {
+        if (modCount != mods) {
+            releasePath();
+            throw new ConcurrentModificationException("the function added or removed keys of this tree");
+        }
+        return descents == walks ? node : descend(key);
+    }
+
+    // drops the references, the path must not keep removed nodes alive
+    private void releasePath() {
+        for (int i = 0; i < depth; i++) {
+            path[i] = null;
+        }
+        depth = 0;
+    }
+
+    // every node of this tree is made here, the augmented trees return their Node subclass
+    Node<K, V> newNode(K key, V value) {
+        return new Node<>(key, value);
+    }
+
+    // an empty tree of the same kind, for the operations that hand back a new tree
+    AVL<K, V> emptyCopy() {
+        return new AVL<>();
     }
 
-    private Node<K, V> fixup(Node<K, V> root) {
+    // links a new leaf under the last node of the path, after a descend that missed 'key'
+    private void insertAtPath(K key, V value) {
+        var node = newNode(key, value);
+        size++;
+        modCount++;
+        if (depth == 0) {
+            root = node;
+            return;
+        }
+        var parent = path[depth - 1];
+        if (parent.entry.getKey().compareTo(key) > 0) {
+            parent.left = node;
+        } else {
+            parent.right = node;
+        }
+        rebalancePath();
+    }
+
+    // 'node' is the one found by the last descend, its parent is on top of the path
+    private void deleteAtPath(Node<K, V> node) {
+        size--;
+        modCount++;
+        var parent = depth > 0 ? path[depth - 1] : null;
+        if (node.left == null || node.right == null) {
+            replaceChild(parent, node, node.left != null ? node.left : node.right);
+        } else {
+            // the successor takes the place of 'node', the path goes on down to the successor parent
+            int index = depth++;
+            var successorParent = node;
+            var successor = node.right;
+            while (successor.left != null) {
+                path[depth++] = successor;
+                successorParent = successor;
+                successor = successor.left;
+            }
+            if (successorParent == node) {
+                node.right = successor.right;
+            } else {
+                successorParent.left = successor.right;
+            }
+            successor.left = node.left;
+            successor.right = node.right;
+            successor.height = node.height;
+            path[index] = successor;
+            replaceChild(parent, node, successor);
+        }
+        node.left = node.right = null;
+        node.update();
+        rebalancePath();
+    }
+
+    // bottom up along the path, it stops rebalancing as soon as a subtree is as high as it was before
+    // because no rotation above it can be needed. The sizes up there still change, so the rest of
+    // the path only gets update()
+    private void rebalancePath() {
+        int i = depth - 1;
+        for (; i >= 0; i--) {
+            var node = path[i];
+            int oldHeight = node.height;
+            var balanced = fixup(node);
+            if (balanced != node) {
+                replaceChild(i > 0 ? path[i - 1] : null, node, balanced);
+            }
+            if (balanced.height == oldHeight) {
+                i--;
+                break;
+            }
+        }
+        for (; i >= 0; i--) {
+            path[i].update();
+        }
+        releasePath();
+    }
+
+    // 'node', found by the last descend, got a new value in place. Nothing moved, so the plain tree has
+    // nothing to do, the trees keeping data about the values of a subtree refresh it along the path
+    void valueUpdated(Node<K, V> node) {
+    }
+
+    // update() on the nodes above the last descend, bottom up
+    void updatePath() {
+        for (int i = depth - 1; i >= 0; i--) {
+            path[i].update();
+        }
+    }
+
+    private void replaceChild(Node<K, V> parent, Node<K, V> child, Node<K, V> replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == child) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
+
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> fixup(Node<_K, _V> root) {
 	if(root == null) {
 	    return null;
 	}
-	root.height = 1 + Math.max(Node.getHeight(root.left), Node.getHeight(root.right));
+	root.update();
         var skewFactor = Node.getSkew(root);
         if (skewFactor < -1) {
             if (Node.getSkew(root.right) > 0) {
@@ -118,7 +482,7 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
             }
             root = root.rotateCounterClockwise();
         } else if(skewFactor > 1) {
-            if (Node.getSkew(root.left) > 0) {
+            if (Node.getSkew(root.left) < 0) {
                 root.left = root.left.rotateCounterClockwise();
             }
             root = root.rotateClockwise();
@@ -126,55 +490,240 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
         return root;
     }
 
-    public boolean remove(K key) {
-	int oldSize = size;
-	root = remove(root, key);
-	return size < oldSize;
+    // keys < 'key' stay here, the others, 'key' included, move to the returned tree. O(log n)
+    public AVL<K, V> split(K key) {
+        var parts = split(root, key);
+        AVL<K, V> upper = emptyCopy();
+        upper.root = parts.found == null ? parts.right : join(null, parts.found, parts.right);
+        upper.size = Node.getSize(upper.root);
+        root = parts.left;
+        size = Node.getSize(root);
+        modCount++;
+        return upper;
+    }
+
+    // every key of 'left' has to be smaller than 'key' and every key of 'right' greater.
+    // The nodes of both trees are reused, so they are left empty. O(|height(left) - height(right)|)
+    public static <K extends Comparable<? super K>, V> AVL<K, V> join(AVL<K, V> left, K key, V value, AVL<K, V> right) {
+        sameKind(left, right);
+        if ((left.root != null && left.last().getKey().compareTo(key) >= 0)
+            || (right.root != null && right.first().getKey().compareTo(key) <= 0)) {
+            throw new IllegalArgumentException("join needs the keys of 'left' < 'key' < the keys of 'right'");
+        }
+        AVL<K, V> joined = left.emptyCopy();
+        joined.root = join(left.root, left.newNode(key, value), right.root);
+        joined.size = joined.root.size;
+        left.clear();
+        right.clear();
+        return joined;
+    }
+
+    // The bulk operations below are built on split and join, with O(m log(n / m + 1)) work for trees
+    // of m <= n keys. The two halves of every step are disjoint subtrees, so they run as fork/join
+    // tasks. They relink the nodes of both trees: the result replaces this tree and 'other' is left empty
+
+    // on common keys the value of this tree wins
+    public void union(AVL<K, V> other) {
+        bulk(Bulk.UNION, other);
+    }
+
+    public void intersection(AVL<K, V> other) {
+        bulk(Bulk.INTERSECTION, other);
+    }
+
+    // removes the keys of 'other' from this tree
+    public void difference(AVL<K, V> other) {
+        bulk(Bulk.DIFFERENCE, other);
+    }
+
+    // 'sortedRun' keys must be strictly increasing, the run is built into a tree in O(m) and then
+    // merged in. Like add, the keys already here keep their value
+    public void bulkAdd(ArrayList<Entry<K, V>> sortedRun) {
+        for (int i = 1; i < sortedRun.size(); i++) {
+            if (sortedRun.get(i - 1).getKey().compareTo(sortedRun.get(i).getKey()) >= 0) {
+                throw new IllegalArgumentException("bulkAdd needs strictly increasing keys, found a disorder at index " + i);
+            }
+        }
+        AVL<K, V> run = emptyCopy();
+        run.root = buildFromSorted(sortedRun, 0, sortedRun.size() - 1);
+        run.size = sortedRun.size();
+        union(run);
+    }
+
+    private void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    // the nodes of an augmented tree carry more than the plain ones, they can't be mixed
+    private static void sameKind(AVL<?, ?> mine, AVL<?, ?> theirs) {
+        if (!mine.canShareNodes(theirs)) {
+            throw new IllegalArgumentException(mine.sharingMismatch(theirs));
+        }
+    }
+
+    // whether the nodes of 'other' can be linked into this tree
+    boolean canShareNodes(AVL<?, ?> other) {
+        return getClass() == other.getClass();
+    }
+
+    // what canShareNodes found wrong with 'other', for the error message
+    String sharingMismatch(AVL<?, ?> other) {
+        return "can't mix the nodes of a " + getClass().getName() + " with the ones of a " + other.getClass().getName();
+    }
+
+    private void bulk(Bulk op, AVL<K, V> other) {
+        sameKind(this, other);
+        if (other == this) {
+            if (op == Bulk.DIFFERENCE) {
+                clear();
+            }
+            return;
+        }
+        root = Scheduler.shared().invoke(new BulkTask<>(op, root, other.root));
+        size = Node.getSize(root);
+        modCount++;
+        other.clear();
+    }
+
+    private Node<K, V> buildFromSorted(ArrayList<Entry<K, V>> sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        var entry = sorted.get(mid);
+        var node = newNode(entry.getKey(), entry.getValue());
+        node.left = buildFromSorted(sorted, lo, mid - 1);
+        node.right = buildFromSorted(sorted, mid + 1, hi);
+        node.update();
+        return node;
+    }
+
+    // the keys of 'left' < the key of 'middle' < the keys of 'right'. Walks down the spine of the higher
+    // tree until the heights match, links 'middle' there and rebalances on the way back like an insert
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> join(Node<_K, _V> left, Node<_K, _V> middle, Node<_K, _V> right) {
+        if (Node.getHeight(left) > Node.getHeight(right) + 1) {
+            left.right = join(left.right, middle, right);
+            return fixup(left);
+        } else if (Node.getHeight(right) > Node.getHeight(left) + 1) {
+            right.left = join(left, middle, right.left);
+            return fixup(right);
+        }
+        middle.left = left;
+        middle.right = right;
+        middle.update();
+        return middle;
+    }
+
+    // join without a middle key: the maximum of 'left' is detached and used as the middle
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> join(Node<_K, _V> left, Node<_K, _V> right) {
+        if (left == null) {
+            return right;
+        }
+        var max = left;
+        while (max.right != null) {
+            max = max.right;
+        }
+        return join(removeMax(left), max, right);
+    }
+
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> removeMax(Node<_K, _V> root) {
+        if (root.right == null) {
+            return root.left;
+        }
+        root.right = removeMax(root.right);
+        return fixup(root);
+    }
+
+    private static class Split<_K extends Comparable<? super _K>, _V> {
+        Node<_K, _V> left, found, right;
+    }
+
+    // splits 'root' into the keys < 'key', the node holding 'key' if any, and the keys > 'key'
+    private static <_K extends Comparable<? super _K>, _V> Split<_K, _V> split(Node<_K, _V> root, _K key) {
+        if (root == null) {
+            return new Split<>();
+        }
+        int compare = root.entry.getKey().compareTo(key);
+        if (compare > 0) {
+            var parts = split(root.left, key);
+            parts.right = join(parts.right, root, root.right);
+            return parts;
+        } else if (compare < 0) {
+            var parts = split(root.right, key);
+            parts.left = join(root.left, root, parts.left);
+            return parts;
+        }
+        Split<_K, _V> parts = new Split<>();
+        parts.left = root.left;
+        parts.right = root.right;
+        parts.found = root;
+        root.left = root.right = null;
+        root.update();
+        return parts;
+    }
+
+    private enum Bulk { UNION, INTERSECTION, DIFFERENCE }
+
+    // below this many nodes a step isn't worth a task
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 12;
+
+    private static class BulkTask<_K extends Comparable<? super _K>, _V> extends Scheduler.Task<Node<_K, _V>> {
+        final Bulk op;
+        final Node<_K, _V> mine, theirs;
+
+        BulkTask(Bulk op, Node<_K, _V> mine, Node<_K, _V> theirs) {
+            this.op = op;
+            this.mine = mine;
+            this.theirs = theirs;
+        }
+
+        @Override
+        protected Node<_K, _V> compute() {
+            return bulk(op, mine, theirs);
+        }
+    }
+
+    // union and intersection split 'theirs' around the root of 'mine', difference splits 'mine'
+    // around the root of 'theirs'. Then the two sides are solved independently and joined back
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> bulk(Bulk op, Node<_K, _V> mine, Node<_K, _V> theirs) {
+        if (mine == null || theirs == null) {
+            return op == Bulk.INTERSECTION ? null : op == Bulk.UNION && mine == null ? theirs : mine;
+        }
+        boolean sequential = mine.size + theirs.size < SEQUENTIAL_THRESHOLD;
+        Node<_K, _V> middle;
+        Split<_K, _V> parts;
+        Node<_K, _V> mineLeft, mineRight, theirsLeft, theirsRight;
+        if (op == Bulk.DIFFERENCE) {
+            parts = split(mine, theirs.entry.getKey());
+            mineLeft = parts.left;
+            mineRight = parts.right;
+            theirsLeft = theirs.left;
+            theirsRight = theirs.right;
+            middle = null;
+        } else {
+            parts = split(theirs, mine.entry.getKey());
+            mineLeft = mine.left;
+            mineRight = mine.right;
+            theirsLeft = parts.left;
+            theirsRight = parts.right;
+            middle = op == Bulk.UNION || parts.found != null ? mine : null;
+        }
+
+        Node<_K, _V> left, right;
+        if (sequential) {
+            left = bulk(op, mineLeft, theirsLeft);
+            right = bulk(op, mineRight, theirsRight);
+        } else {
+            var leftTask = new BulkTask<>(op, mineLeft, theirsLeft);
+            leftTask.fork();
+            right = bulk(op, mineRight, theirsRight);
+            left = leftTask.join();
+        }
+        return middle == null ? join(left, right) : join(left, middle, right);
     }
 
-    private Node<K, V> remove(Node<K, V> root, K key) {
-	if (root == null) {
-	    return null;
-	}
-	int compare = root.entry.getKey().compareTo(key);
-	if (compare > 0) {
-	    root.left = remove(root.left, key);
-	} else if (compare < 0) {
-	    root.right = remove(root.right, key);
-	} else {
-	    size--;
-	    if (root.left == null) {
-		root = root.right;
-	    } else if (root.right == null) {
-		root = root.left;
-	    } else {
-		var min = minimumDeconnection(root, root.right);
-		min.left = root.left;
-		min.right = root.right;
-		root = min;
-	    }
-	}
-	return fixup(root);
-    }
-
-    private Node<K, V> minimumDeconnection(Node<K, V> parent, Node<K, V> child) {
-	 if(child.left == null){
-	     if (child == parent.left) {
-	 	parent.left = child.right;
-	     } else {
-	 	parent.right = child.right;
-	     }
-	     return child;
-	 }
-	 var min = minimumDeconnection(child, child.left);
-	 if (child == parent.left) {
-	     parent.left = fixup(child);
-	 } else {
-	     parent.right = fixup(child);
-	 }
-	 return min;
-   }
-    
     // in order
     @Override
     public Iterator<Entry<K, V>> iterator() {
@@ -224,6 +773,15 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
             System.out.println("Key[" + entry.getKey() + "] = value => " + entry.getValue());
         }
 
+        System.out.println("first => " + tree.first().getKey() + "\tlast => " + tree.last().getKey());
+        System.out.println("floor(\"D\") => " + tree.floor("D").getKey() + "\tceiling(\"D\") => " + tree.ceiling("D").getKey());
+        for (var entry : tree.subMap("Ciao", "ciao")) {
+            System.out.println("subMap(\"Ciao\", \"ciao\") Key[" + entry.getKey() + "] = value => " + entry.getValue());
+        }
+
+        System.out.println("put(\"Suca\", 2) => " + tree.put("Suca", 2) + "\tget(\"Suca\") => " + tree.get("Suca"));
+        System.out.println("merge(\"ciao\", 5) => " + tree.merge("ciao", 5, (a, b) -> a + b) + "\tcompute(\"pujac\") => " + tree.compute("pujac", (k, v) -> v / 10));
+
         AVL<Integer, Integer> intTree = new AVL<>();
         for(int i = 0; i < 30; i++) {
             intTree.add(i, i);
@@ -253,6 +811,38 @@ public class AVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K
 	    biggerTree.remove(i);
 	}
 	System.out.println("Is empty? => " + biggerTree.isEmpty());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1e5; i++) {
+            biggerTree.add(i, i);
+        }
+        System.out.println("1e5 sequential adds took " + (System.nanoTime() - start) / 1e6 + "ms");
+        start = System.nanoTime();
+        for (int i = 0; i < 1e5; i++) {
+            biggerTree.remove(i);
+        }
+        System.out.println("1e5 sequential removes took " + (System.nanoTime() - start) / 1e6 + "ms");
+
+        System.out.println("Merging two 1e6 keys trees with " + Scheduler.shared().parallelism() + " workers");
+        AVL<Integer, Integer> evens = new AVL<>(), thirds = new AVL<>(), looped = new AVL<>();
+        for (int i = 0; i < 1e6; i++) {
+            evens.add(2 * i, i);
+            thirds.add(3 * i, i);
+            looped.add(2 * i, i);
+        }
+        start = System.nanoTime();
+        for (var entry : thirds) {
+            looped.add(entry.getKey(), entry.getValue());
+        }
+        System.out.println("one by one adds took " + (System.nanoTime() - start) / 1e6 + "ms, size => " + looped.size());
+        start = System.nanoTime();
+        evens.union(thirds);
+        System.out.println("union took " + (System.nanoTime() - start) / 1e6 + "ms, size => " + evens.size());
+        System.out.println("Props Holds? => " + assertAVLProperties(evens.root) + "\tother is empty? => " + thirds.isEmpty());
+        var upper = evens.split(1_000_001);
+        System.out.println("split(1000001) sizes => " + evens.size() + " " + upper.size());
+        var rejoined = AVL.join(evens, 1_000_001, -1, upper);
+        System.out.println("join(lower, 1000001, upper) size => " + rejoined.size() + "\tProps Holds? => " + assertAVLProperties(rejoined.root));
     }
 
 }
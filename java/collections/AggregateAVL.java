@@ -0,0 +1,187 @@
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.Objects;
+import java.util.Random;
+
+// an AVL where every node caches the aggregate of the values of its subtree under a monoid: 'combine'
+// has to be associative and 'identity' neutral for it, commutativity isn't needed, the values are always
+// combined in key order. The aggregate is recomputed by update(), so rotations, fixup, join and the
+// in place value updates keep it fresh, and any key range is covered by O(log n) cached subtrees
+public class AggregateAVL<K extends Comparable<? super K>, V, A> extends AVL<K, V> {
+    private final A identity;
+    private final Function<? super V, ? extends A> lift;
+    private final BinaryOperator<A> combine;
+
+    private class AggregateNode extends Node<K, V> {
+        A aggregate;
+
+        AggregateNode(K key, V value) {
+            super(key, value);
+            aggregate = lift.apply(value);
+        }
+
+        @Override
+        void update() {
+            super.update();
+            aggregate = combine.apply(combine.apply(aggregateOf(left), lift.apply(entry.getValue())), aggregateOf(right));
+        }
+    }
+
+    // 'lift' maps a value into the monoid, the identity function when the values are already aggregates.
+    // Trees meant to be joined or merged have to be built with the same 'lift' and 'combine' instances:
+    // two lambdas are never told equal, even when they have the same body
+    public AggregateAVL(A identity, Function<? super V, ? extends A> lift, BinaryOperator<A> combine) {
+        this.identity = identity;
+        this.lift = lift;
+        this.combine = combine;
+    }
+
+    public static void main(String[] args) {
+        AggregateAVL<String, Integer, Integer> sums = new AggregateAVL<>(0, v -> v, Integer::sum);
+        sums.add("apple", 3);
+        sums.add("banana", 5);
+        sums.add("cherry", 7);
+        sums.add("date", 11);
+        System.out.println("sum of all => " + sums.aggregate() + "\tsum in [banana, cherry] => " + sums.aggregate("banana", "cherry"));
+        sums.put("banana", 50);
+        sums.merge("cherry", 1, Integer::sum);
+        sums.remove("apple");
+        System.out.println("after put, merge and remove, sum in [a, c] => " + sums.aggregate("a", "c") + "\tsum in [b, d] => " + sums.aggregate("b", "d"));
+
+        AggregateAVL<Integer, Integer, String> concat = new AggregateAVL<>("", v -> Integer.toString(v), String::concat);
+        for (int i = 9; i >= 0; i--) {
+            concat.add(i, i);
+        }
+        System.out.println("non commutative concat in [2, 7] => " + concat.aggregate(2, 7));
+        System.out.println();
+
+        // rolling window max and sum over latencies keyed by timestamp
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Random random = new Random(42);
+        AggregateAVL<Integer, Integer, Long> latencySum = new AggregateAVL<>(0L, v -> (long) v, Long::sum);
+        AggregateAVL<Integer, Integer, Integer> latencyMax = new AggregateAVL<>(Integer.MIN_VALUE, v -> v, Math::max);
+        for (int i = 0; i < n; i++) {
+            int latency = random.nextInt(1000);
+            latencySum.add(i, latency);
+            latencyMax.add(i, latency);
+        }
+        int window = n / 10;
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = window; i < n; i++) {
+            checksum += latencySum.aggregate(i - window, i) + latencyMax.aggregate(i - window, i);
+        }
+        System.out.println((n - window) + " windows of " + window + " keys with aggregate took " + (System.nanoTime() - start) / 1e6 + "ms, checksum => " + checksum);
+        start = System.nanoTime();
+        checksum = 0;
+        for (int i = window; i < n; i += 100) {
+            long sum = 0;
+            int max = Integer.MIN_VALUE;
+            for (var entry : latencySum.subMap(i - window, i + 1)) {
+                sum += entry.getValue();
+                max = Math.max(max, entry.getValue());
+            }
+            checksum += sum + max;
+        }
+        System.out.println((n - window) / 100 + " windows, a hundredth of them, scanned with subMap took " + (System.nanoTime() - start) / 1e6 + "ms, checksum => " + checksum);
+    }
+
+    @Override
+    Node<K, V> newNode(K key, V value) {
+        return new AggregateNode(key, value);
+    }
+
+    @Override
+    AVL<K, V> emptyCopy() {
+        return new AggregateAVL<>(identity, lift, combine);
+    }
+
+    // the nodes recompute their aggregate with the functions of the tree they were made by. Functions can
+    // only be compared by reference, the identity is a value and a boxed one is rarely the same instance
+    @Override
+    boolean canShareNodes(AVL<?, ?> other) {
+        if (!super.canShareNodes(other)) {
+            return false;
+        }
+        var theirs = (AggregateAVL<?, ?, ?>) other;
+        return Objects.equals(identity, theirs.identity) && lift == theirs.lift && combine == theirs.combine;
+    }
+
+    @Override
+    String sharingMismatch(AVL<?, ?> other) {
+        if (getClass() != other.getClass()) {
+            return super.sharingMismatch(other);
+        }
+        return "the two trees have different monoid functions: they need equal identities and the same lift and combine"
+            + " instances, two lambdas with the same body are different instances";
+    }
+
+    @Override
+    void valueUpdated(Node<K, V> node) {
+        node.update();
+        updatePath();
+    }
+
+    @SuppressWarnings("unchecked")
+    private A aggregateOf(Node<K, V> node) {
+        return node == null ? identity : ((AggregateNode) node).aggregate;
+    }
+
+    // all the values, O(1)
+    public A aggregate() {
+        return aggregateOf(root);
+    }
+
+    // the values of the keys in [lo, hi]. Below the first node inside the range the walk splits in two:
+    // on the way to 'lo' every right subtree is inside the range, on the way to 'hi' every left one
+    public A aggregate(K lo, K hi) {
+        if (lo.compareTo(hi) > 0) {
+            return identity;
+        }
+        var iter = root;
+        while (iter != null) {
+            if (iter.entry.getKey().compareTo(lo) < 0) {
+                iter = iter.right;
+            } else if (iter.entry.getKey().compareTo(hi) > 0) {
+                iter = iter.left;
+            } else {
+                break;
+            }
+        }
+        if (iter == null) {
+            return identity;
+        }
+        A middle = lift.apply(iter.entry.getValue());
+        return combine.apply(combine.apply(from(iter.left, lo), middle), upTo(iter.right, hi));
+    }
+
+    // keys >= 'lo' in the subtree, the pieces are found right to left
+    private A from(Node<K, V> node, K lo) {
+        A aggregate = identity;
+        while (node != null) {
+            if (node.entry.getKey().compareTo(lo) >= 0) {
+                A piece = combine.apply(lift.apply(node.entry.getValue()), aggregateOf(node.right));
+                aggregate = combine.apply(piece, aggregate);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return aggregate;
+    }
+
+    // keys <= 'hi' in the subtree, the pieces are found left to right
+    private A upTo(Node<K, V> node, K hi) {
+        A aggregate = identity;
+        while (node != null) {
+            if (node.entry.getKey().compareTo(hi) <= 0) {
+                A piece = combine.apply(aggregateOf(node.left), lift.apply(node.entry.getValue()));
+                aggregate = combine.apply(aggregate, piece);
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return aggregate;
+    }
+}
@@ -5,10 +5,13 @@ import java.util.RandomAccess;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Predicate;
 
 public class ArrayList<T> implements Iterable<T>, RandomAccess {
     private static final int DEFAULT_SIZE = 16;
+    // below this many elements a parallel operation stops splitting and runs sequentially
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 12;
 
     private Object[] array;
     private int cap, len;
@@ -81,6 +84,10 @@ public class ArrayList<T> implements Iterable<T>, RandomAccess {
         cap >>= 1;
     }
 
+    public int size() {
+        return len;
+    }
+
     public void add(T el) {
         if (cap == len) {
             growth();
@@ -203,4 +210,88 @@ public class ArrayList<T> implements Iterable<T>, RandomAccess {
             consumer.accept((T) array[i]);
         }
     }
+
+    public <U> ArrayList<U> parallelMap(Function<? super T, ? extends U> f) {
+        return parallelMap(f, Scheduler.shared());
+    }
+
+    // same as map, the ranges are split in halves and mapped by the workers of 'scheduler'
+    public <U> ArrayList<U> parallelMap(Function<? super T, ? extends U> f, Scheduler scheduler) {
+        var mapped = new Object[cap];
+        scheduler.invoke(new MapTask<>(array, mapped, f, 0, len));
+        return new ArrayList<U>(mapped, len, cap);
+    }
+
+    public <U> U parallelReduce(BiFunction<? super T, ? super U, ? extends U> reducer, U identity, BinaryOperator<U> combiner) {
+        return parallelReduce(reducer, identity, combiner, Scheduler.shared());
+    }
+
+    // every range is reduced from 'identity' and the partial results are merged in order by 'combiner',
+    // so 'identity' has to be neutral for it and 'combiner' associative
+    public <U> U parallelReduce(BiFunction<? super T, ? super U, ? extends U> reducer, U identity, BinaryOperator<U> combiner, Scheduler scheduler) {
+        return scheduler.invoke(new ReduceTask<>(array, reducer, identity, combiner, 0, len));
+    }
+
+    private static class MapTask<_T, _U> extends Scheduler.Task<Void> {
+        final Object[] from, to;
+        final Function<? super _T, ? extends _U> f;
+        final int start, end;
+
+        MapTask(Object[] from, Object[] to, Function<? super _T, ? extends _U> f, int start, int end) {
+            this.from = from;
+            this.to = to;
+            this.f = f;
+            this.start = start;
+            this.end = end;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Void compute() {
+            if (end - start <= SEQUENTIAL_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    to[i] = f.apply((_T) from[i]);
+                }
+                return null;
+            }
+            int middle = (start + end) >>> 1;
+            var right = new MapTask<>(from, to, f, middle, end).fork();
+            new MapTask<>(from, to, f, start, middle).compute();
+            right.join();
+            return null;
+        }
+    }
+
+    private static class ReduceTask<_T, _U> extends Scheduler.Task<_U> {
+        final Object[] array;
+        final BiFunction<? super _T, ? super _U, ? extends _U> reducer;
+        final _U identity;
+        final BinaryOperator<_U> combiner;
+        final int start, end;
+
+        ReduceTask(Object[] array, BiFunction<? super _T, ? super _U, ? extends _U> reducer, _U identity, BinaryOperator<_U> combiner, int start, int end) {
+            this.array = array;
+            this.reducer = reducer;
+            this.identity = identity;
+            this.combiner = combiner;
+            this.start = start;
+            this.end = end;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected _U compute() {
+            if (end - start <= SEQUENTIAL_THRESHOLD) {
+                _U acc = identity;
+                for (int i = start; i < end; i++) {
+                    acc = reducer.apply((_T) array[i], acc);
+                }
+                return acc;
+            }
+            int middle = (start + end) >>> 1;
+            var right = new ReduceTask<>(array, reducer, identity, combiner, middle, end).fork();
+            _U left = new ReduceTask<>(array, reducer, identity, combiner, start, middle).compute();
+            return combiner.apply(left, right.join());
+        }
+    }
 }
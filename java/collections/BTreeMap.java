@@ -0,0 +1,614 @@
+import java.util.function.Function;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Random;
+
+// B-tree: every node keeps up to 'fanout - 1' sorted keys and values in plain arrays, so a lookup
+// touches a handful of nodes and binary searches inside each of them instead of chasing one pointer per key
+public class BTreeMap<K extends Comparable<? super K>, V> implements Iterable<Entry<K, V>> {
+    private static final int DEFAULT_FANOUT = 64;
+
+    private static class Node {
+        Object[] keys;
+        Object[] values;
+        Node[] children; // null for leaves
+        int n;
+
+        Node(int fanout, boolean leaf) {
+            keys = new Object[fanout - 1];
+            values = new Object[fanout - 1];
+            children = leaf ? null : new Node[fanout];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    private final int fanout;
+    private final int minDegree; // every node but the root has at least 'minDegree - 1' keys
+    private Node root = null;
+    private int len = 0;
+
+    public BTreeMap() {
+        this(DEFAULT_FANOUT);
+    }
+
+    // 'fanout' is the maximum number of children of a node, rounded down to an even number
+    public BTreeMap(int fanout) {
+        if (fanout < 4) {
+            throw new IllegalArgumentException("fanout must be at least 4, got " + fanout);
+        }
+        this.minDegree = fanout / 2;
+        this.fanout = minDegree * 2;
+    }
+
+    public static void main(String[] args) {
+        BTreeMap<Integer, String> tree = new BTreeMap<>(4);
+        tree.add(1, "Hello");
+        tree.add(3, ", ");
+        tree.add(6, "World");
+        tree.add(7, "!");
+        tree.add(4, "");
+
+        System.out.println("In order visit on tree");
+        for (var entry : tree) {
+            System.out.print(entry.getValue());
+        }
+        System.out.println();
+
+        System.out.println("Trying the 'map' function");
+        BTreeMap<Integer, Integer> treeLen = tree.map(s -> s.length());
+        treeLen.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := " + entry.getValue()));
+        System.out.println("The sum of all str lengths is := " + treeLen.reduce((entry, acc) -> acc + entry.getValue(), Integer.valueOf(0)));
+        System.out.println();
+
+        System.out.println("Trying the 'symmetricalDifference' function");
+        BTreeMap<Integer, String> other = new BTreeMap<>(4);
+        other.add(6, "Whatever");
+        other.add(5, "CyberWorld");
+        for (var entry : tree.symmetricalDifference(other)) {
+            System.out.print(entry.getValue());
+        }
+        System.out.println();
+
+        System.out.println("Trying the 'remove' method");
+        tree.remove(6);
+        tree.remove(1);
+        tree.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := '" + entry.getValue() + "'"));
+        System.out.println();
+
+        // lookup and scan throughput against TreeMap and AVL, pass the largest power of ten to try (default 10^6)
+        int maxExponent = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        for (int exponent = 4; exponent <= maxExponent; exponent++) {
+            int n = (int) Math.pow(10, exponent);
+            Integer[] keys = shuffledKeys(n);
+            System.out.println("n = 10^" + exponent);
+
+            BTreeMap<Integer, Integer> btree = new BTreeMap<>();
+            for (var key : keys) {
+                btree.add(key, key);
+            }
+            benchmark("BTreeMap", n, keys, btree::contains, () -> btree.reduce((entry, acc) -> acc + entry.getValue(), 0L));
+
+            TreeMap<Integer, Integer> redBlack = new TreeMap<>();
+            for (var key : keys) {
+                redBlack.add(key, key);
+            }
+            benchmark("TreeMap ", n, keys, redBlack::contains, () -> redBlack.reduce((entry, acc) -> acc + entry.getValue(), 0L));
+
+            AVL<Integer, Integer> avl = new AVL<>();
+            for (var key : keys) {
+                avl.add(key, key);
+            }
+            benchmark("AVL     ", n, keys, avl::contains, () -> {
+                long sum = 0;
+                for (var entry : avl) {
+                    sum += entry.getValue();
+                }
+                return sum;
+            });
+        }
+    }
+
+    private static Integer[] shuffledKeys(int n) {
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        Random random = new Random(42);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            var tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        return keys;
+    }
+
+    private static void benchmark(String name, int n, Integer[] keys, Predicate<Integer> contains, Supplier<Long> scan) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (var key : keys) {
+            if (contains.test(key)) {
+                found++;
+            }
+        }
+        double lookups = n / ((System.nanoTime() - start) / 1e9);
+        start = System.nanoTime();
+        long sum = scan.get();
+        double scanned = n / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("  %s lookups/s => %.0f\tscanned keys/s => %.0f\t(found %d, sum %d)%n", name, lookups, scanned, found, sum);
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return len == 0;
+    }
+
+    // index of 'key' in the node, or -(insertion point) - 1 when it isn't there
+    @SuppressWarnings("unchecked")
+    private int search(Node node, K key) {
+        int lo = 0, hi = node.n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int compare = ((K) node.keys[mid]).compareTo(key);
+            if (compare < 0) {
+                lo = mid + 1;
+            } else if (compare > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    public boolean contains(K key) {
+        var iter = root;
+        while (iter != null) {
+            int index = search(iter, key);
+            if (index >= 0) {
+                return true;
+            }
+            iter = iter.isLeaf() ? null : iter.children[-index - 1];
+        }
+        return false;
+    }
+
+    // moves the upper half of the full child 'index' into a new sibling, the median key goes up into 'parent'
+    private void splitChild(Node parent, int index) {
+        Node full = parent.children[index];
+        Node sibling = new Node(fanout, full.isLeaf());
+        int t = minDegree;
+        sibling.n = t - 1;
+        System.arraycopy(full.keys, t, sibling.keys, 0, t - 1);
+        System.arraycopy(full.values, t, sibling.values, 0, t - 1);
+        if (!full.isLeaf()) {
+            System.arraycopy(full.children, t, sibling.children, 0, t);
+            Arrays.fill(full.children, t, fanout, null);
+        }
+
+        System.arraycopy(parent.keys, index, parent.keys, index + 1, parent.n - index);
+        System.arraycopy(parent.values, index, parent.values, index + 1, parent.n - index);
+        System.arraycopy(parent.children, index + 1, parent.children, index + 2, parent.n - index);
+        parent.keys[index] = full.keys[t - 1];
+        parent.values[index] = full.values[t - 1];
+        parent.children[index + 1] = sibling;
+        parent.n++;
+
+        Arrays.fill(full.keys, t - 1, fanout - 1, null);
+        Arrays.fill(full.values, t - 1, fanout - 1, null);
+        full.n = t - 1;
+    }
+
+    // single top down pass: full nodes are split on the way, so the leaf always has room
+    @SuppressWarnings("unchecked")
+    public boolean add(K key, V value) {
+        if (root == null) {
+            root = new Node(fanout, true);
+        }
+        if (root.n == fanout - 1) {
+            Node newRoot = new Node(fanout, false);
+            newRoot.children[0] = root;
+            root = newRoot;
+            splitChild(root, 0);
+        }
+        var iter = root;
+        while (true) {
+            int index = search(iter, key);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (iter.isLeaf()) {
+                System.arraycopy(iter.keys, index, iter.keys, index + 1, iter.n - index);
+                System.arraycopy(iter.values, index, iter.values, index + 1, iter.n - index);
+                iter.keys[index] = key;
+                iter.values[index] = value;
+                iter.n++;
+                len++;
+                return true;
+            }
+            if (iter.children[index].n == fanout - 1) {
+                splitChild(iter, index);
+                int compare = ((K) iter.keys[index]).compareTo(key);
+                if (compare == 0) {
+                    return false;
+                } else if (compare < 0) {
+                    index++;
+                }
+            }
+            iter = iter.children[index];
+        }
+    }
+
+    // single top down pass: before going down into a child with the minimum number of keys,
+    // a key is borrowed from a sibling or the child is merged with it
+    public boolean remove(K key) {
+        if (root == null) {
+            return false;
+        }
+        var iter = root;
+        boolean removed = false;
+        while (true) {
+            int index = search(iter, key);
+            if (index >= 0 && iter.isLeaf()) {
+                removeFromLeaf(iter, index);
+                removed = true;
+                break;
+            } else if (index >= 0) {
+                Node left = iter.children[index], right = iter.children[index + 1];
+                if (left.n >= minDegree) {
+                    // replace with the predecessor, then go on removing the predecessor from the left subtree
+                    Node max = left;
+                    while (!max.isLeaf()) {
+                        max = max.children[max.n];
+                    }
+                    key = replace(iter, index, max, max.n - 1);
+                    iter = left;
+                } else if (right.n >= minDegree) {
+                    Node min = right;
+                    while (!min.isLeaf()) {
+                        min = min.children[0];
+                    }
+                    key = replace(iter, index, min, 0);
+                    iter = right;
+                } else {
+                    merge(iter, index);
+                    iter = left;
+                }
+            } else if (iter.isLeaf()) {
+                break;
+            } else {
+                index = -index - 1;
+                if (iter.children[index].n < minDegree) {
+                    index = fill(iter, index);
+                }
+                iter = iter.children[index];
+            }
+        }
+        if (root.n == 0) {
+            root = root.isLeaf() ? null : root.children[0];
+        }
+        if (removed) {
+            len--;
+        }
+        return removed;
+    }
+
+    // copies the entry 'from[index]' over 'node[at]', returns the key that now has to be removed down below
+    @SuppressWarnings("unchecked")
+    private K replace(Node node, int at, Node from, int index) {
+        node.keys[at] = from.keys[index];
+        node.values[at] = from.values[index];
+        return (K) from.keys[index];
+    }
+
+    private void removeFromLeaf(Node leaf, int index) {
+        System.arraycopy(leaf.keys, index + 1, leaf.keys, index, leaf.n - index - 1);
+        System.arraycopy(leaf.values, index + 1, leaf.values, index, leaf.n - index - 1);
+        leaf.n--;
+        leaf.keys[leaf.n] = null;
+        leaf.values[leaf.n] = null;
+    }
+
+    // children 'index' and 'index + 1' become one node around key 'index' of the parent
+    private void merge(Node parent, int index) {
+        Node left = parent.children[index], right = parent.children[index + 1];
+        left.keys[left.n] = parent.keys[index];
+        left.values[left.n] = parent.values[index];
+        System.arraycopy(right.keys, 0, left.keys, left.n + 1, right.n);
+        System.arraycopy(right.values, 0, left.values, left.n + 1, right.n);
+        if (!left.isLeaf()) {
+            System.arraycopy(right.children, 0, left.children, left.n + 1, right.n + 1);
+        }
+        left.n += right.n + 1;
+
+        System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.n - index - 1);
+        System.arraycopy(parent.values, index + 1, parent.values, index, parent.n - index - 1);
+        System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.n - index - 1);
+        parent.n--;
+        parent.keys[parent.n] = null;
+        parent.values[parent.n] = null;
+        parent.children[parent.n + 1] = null;
+    }
+
+    // makes child 'index' hold at least 'minDegree' keys, returns where the child ended up
+    private int fill(Node parent, int index) {
+        if (index > 0 && parent.children[index - 1].n >= minDegree) {
+            Node child = parent.children[index], left = parent.children[index - 1];
+            System.arraycopy(child.keys, 0, child.keys, 1, child.n);
+            System.arraycopy(child.values, 0, child.values, 1, child.n);
+            child.keys[0] = parent.keys[index - 1];
+            child.values[0] = parent.values[index - 1];
+            if (!child.isLeaf()) {
+                System.arraycopy(child.children, 0, child.children, 1, child.n + 1);
+                child.children[0] = left.children[left.n];
+                left.children[left.n] = null;
+            }
+            child.n++;
+            parent.keys[index - 1] = left.keys[left.n - 1];
+            parent.values[index - 1] = left.values[left.n - 1];
+            left.n--;
+            left.keys[left.n] = null;
+            left.values[left.n] = null;
+            return index;
+        } else if (index < parent.n && parent.children[index + 1].n >= minDegree) {
+            Node child = parent.children[index], right = parent.children[index + 1];
+            child.keys[child.n] = parent.keys[index];
+            child.values[child.n] = parent.values[index];
+            if (!child.isLeaf()) {
+                child.children[child.n + 1] = right.children[0];
+                System.arraycopy(right.children, 1, right.children, 0, right.n);
+                right.children[right.n] = null;
+            }
+            child.n++;
+            parent.keys[index] = right.keys[0];
+            parent.values[index] = right.values[0];
+            removeFromLeaf(right, 0);
+            return index;
+        } else if (index < parent.n) {
+            merge(parent, index);
+            return index;
+        } else {
+            merge(parent, index - 1);
+            return index - 1;
+        }
+    }
+
+    // in order
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return new Iterator<Entry<K, V>>() {
+            Node[] path;
+            int[] positions;
+            int depth = -1;
+
+            {
+                int height = 0;
+                for (var iter = root; iter != null; iter = iter.isLeaf() ? null : iter.children[0]) {
+                    height++;
+                }
+                path = new Node[height];
+                positions = new int[height];
+                if (len > 0) {
+                    descend(root);
+                }
+            }
+
+            private void descend(Node node) {
+                while (true) {
+                    path[++depth] = node;
+                    positions[depth] = 0;
+                    if (node.isLeaf()) {
+                        return;
+                    }
+                    node = node.children[0];
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return depth >= 0;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Entry<K, V> next() {
+                Node node = path[depth];
+                int index = positions[depth]++;
+                var entry = new Entry<K, V>((K) node.keys[index], (V) node.values[index]);
+                if (!node.isLeaf()) {
+                    descend(node.children[index + 1]);
+                } else {
+                    while (depth >= 0 && positions[depth] == path[depth].n) {
+                        depth--;
+                    }
+                }
+                return entry;
+            }
+        };
+    }
+
+    private static <E> E nextOrNull(Iterator<E> iter) {
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    // the other map keys are of a super type of K, so they can always be compared with ours
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Object theirs, Object mine) {
+        return ((Comparable<Object>) theirs).compareTo(mine);
+    }
+
+    // the set operations merge the two in order visits, the result is filled in key order
+    public BTreeMap<K, V> intersect(BTreeMap<? super K, ?> other) {
+        BTreeMap<K, V> intersection = new BTreeMap<>(fanout);
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        var b = nextOrNull(theirs);
+        while (a != null && b != null) {
+            int compare = compareKeys(b.getKey(), a.getKey());
+            if (compare > 0) {
+                a = nextOrNull(mine);
+            } else if (compare < 0) {
+                b = nextOrNull(theirs);
+            } else {
+                intersection.add(a.getKey(), a.getValue());
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
+            }
+        }
+        return intersection;
+    }
+
+    // on common keys the value of this map wins
+    public BTreeMap<K, V> union(BTreeMap<? extends K, ? extends V> other) {
+        BTreeMap<K, V> unions = new BTreeMap<>(fanout);
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        Entry<? extends K, ? extends V> b = nextOrNull(theirs);
+        while (a != null || b != null) {
+            int compare = a == null ? 1 : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            if (compare <= 0) {
+                unions.add(a.getKey(), a.getValue());
+                a = nextOrNull(mine);
+                if (compare == 0) {
+                    b = nextOrNull(theirs);
+                }
+            } else {
+                unions.add(b.getKey(), b.getValue());
+                b = nextOrNull(theirs);
+            }
+        }
+        return unions;
+    }
+
+    public BTreeMap<K, V> difference(BTreeMap<? super K, ?> other) {
+        BTreeMap<K, V> differences = new BTreeMap<>(fanout);
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        var b = nextOrNull(theirs);
+        while (a != null) {
+            int compare = b == null ? 1 : compareKeys(b.getKey(), a.getKey());
+            if (compare > 0) {
+                differences.add(a.getKey(), a.getValue());
+                a = nextOrNull(mine);
+            } else if (compare < 0) {
+                b = nextOrNull(theirs);
+            } else {
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
+            }
+        }
+        return differences;
+    }
+
+    public BTreeMap<K, V> symmetricalDifference(BTreeMap<K, ? extends V> other) {
+        BTreeMap<K, V> symDiff = new BTreeMap<>(fanout);
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        Entry<K, ? extends V> b = nextOrNull(theirs);
+        while (a != null || b != null) {
+            int compare = a == null ? 1 : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            if (compare < 0) {
+                symDiff.add(a.getKey(), a.getValue());
+                a = nextOrNull(mine);
+            } else if (compare > 0) {
+                symDiff.add(b.getKey(), b.getValue());
+                b = nextOrNull(theirs);
+            } else {
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
+            }
+        }
+        return symDiff;
+    }
+
+    // the keys don't change, so the mapped tree is a copy of this one node by node
+    public <U> BTreeMap<K, U> map(Function<? super V, ? extends U> f) {
+        BTreeMap<K, U> mapped = new BTreeMap<>(fanout);
+        mapped.root = mapNode(root, f);
+        mapped.len = len;
+        return mapped;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node mapNode(Node node, Function<? super V, ?> f) {
+        if (node == null) {
+            return null;
+        }
+        Node mapped = new Node(fanout, node.isLeaf());
+        mapped.n = node.n;
+        System.arraycopy(node.keys, 0, mapped.keys, 0, node.n);
+        for (int i = 0; i <= node.n; i++) {
+            if (!node.isLeaf()) {
+                mapped.children[i] = mapNode(node.children[i], f);
+            }
+            if (i < node.n) {
+                mapped.values[i] = f.apply((V) node.values[i]);
+            }
+        }
+        return mapped;
+    }
+
+    public <Z extends Comparable<? super Z>> BTreeMap<Z, V> mapKeys(Function<? super K, ? extends Z> f) {
+        BTreeMap<Z, V> mapped = new BTreeMap<>(fanout);
+        for (Entry<K, V> entry : this) {
+            mapped.add(f.apply(entry.getKey()), entry.getValue());
+        }
+        return mapped;
+    }
+
+    public <Z extends Comparable<? super Z>, T> BTreeMap<Z, T> mapBoth(Function<? super K, ? extends Z> fnKey, Function<? super V, ? extends T> fnValue) {
+        BTreeMap<Z, T> mapped = new BTreeMap<>(fanout);
+        for (Entry<K, V> entry : this) {
+            mapped.add(fnKey.apply(entry.getKey()), fnValue.apply(entry.getValue()));
+        }
+        return mapped;
+    }
+
+    public BTreeMap<K, V> filterByKeys(Predicate<? super K> p) {
+        BTreeMap<K, V> filtered = new BTreeMap<>(fanout);
+        for (Entry<K, V> entry : this) {
+            if (p.test(entry.getKey())) {
+                filtered.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    public BTreeMap<K, V> filterByValues(Predicate<? super V> p) {
+        BTreeMap<K, V> filtered = new BTreeMap<>(fanout);
+        for (Entry<K, V> entry : this) {
+            if (p.test(entry.getValue())) {
+                filtered.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    public <U> U reduce(BiFunction<? super Entry<? extends K, ? extends V>, ? super U, ? extends U> reducer, U initial) {
+        for (Entry<K, V> entry : this) {
+            initial = reducer.apply(entry, initial);
+        }
+        return initial;
+    }
+
+    public void each(Consumer<? super Entry<? extends K, ? extends V>> consumer) {
+        for (Entry<K, V> entry : this) {
+            consumer.accept(entry);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.Iterator;
+
+// same AVL of AVL.java, but a node is an index into parallel arrays instead of a Node + Entry pair:
+// a mapping costs 2 references, 2 ints and a byte instead of two object headers and their fields.
+// Removed slots are chained in a free list through 'left' and handed out again before new ones
+public class CompactAVL<K extends Comparable<? super K>, V> implements Iterable<Entry<K, V>> {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int NIL = -1;
+    // an AVL tree with n nodes is less than 1.45 log2(n + 2) high, an int size never gets close to 64 levels
+    private static final int MAX_HEIGHT = 64;
+
+    private Object[] keys = new Object[DEFAULT_SIZE];
+    private Object[] values = new Object[DEFAULT_SIZE];
+    private int[] left = new int[DEFAULT_SIZE];
+    private int[] right = new int[DEFAULT_SIZE];
+    private byte[] height = new byte[DEFAULT_SIZE];
+    private int root = NIL;
+    private int size;
+    private int used; // slots handed out at least once, the ones from here on were never used
+    private int free = NIL; // head of the free list
+    // the nodes above the key of the last descent, root first. Reused by every insert and delete
+    private final int[] path = new int[MAX_HEIGHT];
+    private int depth;
+
+    public static void main(String[] args) {
+        CompactAVL<String, Integer> tree = new CompactAVL<>();
+        tree.add("Ciao", 10);
+        tree.add("Suca", 1);
+        tree.add("pujac", 100);
+        tree.add("ciao", -10);
+        tree.remove("Suca");
+        tree.add("Hello", 7);
+
+        for (var entry : tree) {
+            System.out.println("Key[" + entry.getKey() + "] = value => " + entry.getValue());
+        }
+        System.out.println("contains(\"Suca\") => " + tree.contains("Suca") + "\tget(\"Hello\") => " + tree.get("Hello"));
+        System.out.println();
+
+        CompactAVL<Integer, Integer> intTree = new CompactAVL<>();
+        for (int i = 0; i < 1e5; i++) {
+            intTree.add(i, i);
+        }
+        System.out.println("Props Holds on 1e5 sequential keys? => " + intTree.assertAVLProperties(intTree.root));
+        for (int i = 0; i < 1e5; i += 2) {
+            intTree.remove(i);
+        }
+        System.out.println("Props Holds after removing half? => " + intTree.assertAVLProperties(intTree.root) + "\tsize => " + intTree.size());
+        System.out.println();
+
+        // the keys and values are shared by both trees, so only the structure is measured
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            boxed[i] = i;
+        }
+        System.out.println("Memory used by the structure of " + n + " entries");
+        long before = usedMemory();
+        AVL<Integer, Integer> avl = new AVL<>();
+        for (var key : boxed) {
+            avl.add(key, key);
+        }
+        long after = usedMemory();
+        System.out.println("AVL => " + (after - before) / n + " bytes per entry, size => " + avl.size());
+        avl = null;
+
+        before = usedMemory();
+        CompactAVL<Integer, Integer> compact = new CompactAVL<>();
+        for (var key : boxed) {
+            compact.add(key, key);
+        }
+        after = usedMemory();
+        System.out.println("CompactAVL => " + (after - before) / n + " bytes per entry, size => " + compact.size());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(K key) {
+        return find(key) != NIL;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int node = find(key);
+        return node == NIL ? null : (V) values[node];
+    }
+
+    public boolean add(K key, V value) {
+        if (descend(key) != NIL) {
+            return false;
+        }
+        int node = allocate(key, value);
+        size++;
+        if (depth == 0) {
+            root = node;
+            return true;
+        }
+        int parent = path[depth - 1];
+        if (keyOf(parent).compareTo(key) > 0) {
+            left[parent] = node;
+        } else {
+            right[parent] = node;
+        }
+        rebalancePath();
+        return true;
+    }
+
+    public boolean remove(K key) {
+        int node = descend(key);
+        if (node == NIL) {
+            return false;
+        }
+        size--;
+        int parent = depth > 0 ? path[depth - 1] : NIL;
+        if (left[node] == NIL || right[node] == NIL) {
+            replaceChild(parent, node, left[node] != NIL ? left[node] : right[node]);
+        } else {
+            // the successor takes the place of 'node', the path goes on down to the successor parent
+            int index = depth++;
+            int successorParent = node;
+            int successor = right[node];
+            while (left[successor] != NIL) {
+                path[depth++] = successor;
+                successorParent = successor;
+                successor = left[successor];
+            }
+            if (successorParent == node) {
+                right[node] = right[successor];
+            } else {
+                left[successorParent] = right[successor];
+            }
+            left[successor] = left[node];
+            right[successor] = right[node];
+            height[successor] = height[node];
+            path[index] = successor;
+            replaceChild(parent, node, successor);
+        }
+        release(node);
+        rebalancePath();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyOf(int node) {
+        return (K) keys[node];
+    }
+
+    // the node of 'key' or NIL, a plain walk that leaves 'path' alone: lookups don't write any field
+    private int find(K key) {
+        int iter = root;
+        while (iter != NIL) {
+            int compare = keyOf(iter).compareTo(key);
+            if (compare == 0) {
+                return iter;
+            }
+            iter = compare > 0 ? left[iter] : right[iter];
+        }
+        return NIL;
+    }
+
+    // walks down to 'key' recording the nodes above it in 'path', returns its node or NIL if it is missing.
+    // For the mutators only
+    private int descend(K key) {
+        depth = 0;
+        int iter = root;
+        while (iter != NIL) {
+            int compare = keyOf(iter).compareTo(key);
+            if (compare == 0) {
+                return iter;
+            }
+            path[depth++] = iter;
+            iter = compare > 0 ? left[iter] : right[iter];
+        }
+        return NIL;
+    }
+
+    private int allocate(K key, V value) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (used == keys.length) {
+                growth();
+            }
+            node = used++;
+        }
+        keys[node] = key;
+        values[node] = value;
+        left[node] = NIL;
+        right[node] = NIL;
+        height[node] = 0;
+        return node;
+    }
+
+    private void release(int node) {
+        keys[node] = null;
+        values[node] = null;
+        right[node] = NIL;
+        left[node] = free;
+        free = node;
+    }
+
+    private void growth() {
+        int capacity = keys.length << 1;
+        Object[] newKeys = new Object[capacity];
+        Object[] newValues = new Object[capacity];
+        int[] newLeft = new int[capacity];
+        int[] newRight = new int[capacity];
+        byte[] newHeight = new byte[capacity];
+        System.arraycopy(keys, 0, newKeys, 0, used);
+        System.arraycopy(values, 0, newValues, 0, used);
+        System.arraycopy(left, 0, newLeft, 0, used);
+        System.arraycopy(right, 0, newRight, 0, used);
+        System.arraycopy(height, 0, newHeight, 0, used);
+        keys = newKeys;
+        values = newValues;
+        left = newLeft;
+        right = newRight;
+        height = newHeight;
+    }
+
+    private int heightOf(int node) {
+        return node == NIL ? -1 : height[node];
+    }
+
+    private int skewOf(int node) {
+        return heightOf(left[node]) - heightOf(right[node]);
+    }
+
+    private void updateHeight(int node) {
+        height[node] = (byte) (1 + Math.max(heightOf(left[node]), heightOf(right[node])));
+    }
+
+    private int rotateClockwise(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private int rotateCounterClockwise(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private int fixup(int node) {
+        updateHeight(node);
+        int skewFactor = skewOf(node);
+        if (skewFactor < -1) {
+            if (skewOf(right[node]) > 0) {
+                right[node] = rotateClockwise(right[node]);
+            }
+            node = rotateCounterClockwise(node);
+        } else if (skewFactor > 1) {
+            if (skewOf(left[node]) < 0) {
+                left[node] = rotateCounterClockwise(left[node]);
+            }
+            node = rotateClockwise(node);
+        }
+        return node;
+    }
+
+    // bottom up along the path, it stops as soon as a subtree is as high as it was before
+    // because nothing above it can have changed
+    private void rebalancePath() {
+        for (int i = depth - 1; i >= 0; i--) {
+            int node = path[i];
+            int oldHeight = height[node];
+            int balanced = fixup(node);
+            if (balanced != node) {
+                replaceChild(i > 0 ? path[i - 1] : NIL, node, balanced);
+            }
+            if (height[balanced] == oldHeight) {
+                break;
+            }
+        }
+        depth = 0;
+    }
+
+    private void replaceChild(int parent, int child, int replacement) {
+        if (parent == NIL) {
+            root = replacement;
+        } else if (left[parent] == child) {
+            left[parent] = replacement;
+        } else {
+            right[parent] = replacement;
+        }
+    }
+
+    // in order, the stack of the pending nodes is an int array as high as the tree can be
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+
+        return new Iterator<Entry<K, V>>() {
+            int[] stack = new int[MAX_HEIGHT];
+            int top = 0;
+            int current = root;
+
+            @Override
+            public boolean hasNext() {
+                return top > 0 || current != NIL;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Entry<K, V> next() {
+                while (current != NIL) {
+                    stack[top++] = current;
+                    current = left[current];
+                }
+
+                current = stack[--top];
+                var nextEntry = new Entry<K, V>(keyOf(current), (V) values[current]);
+
+                current = right[current];
+
+                return nextEntry;
+            }
+        };
+    }
+
+    public <U> U reduce(BiFunction<? super Entry<? extends K, ? extends V>, ? super U, ? extends U> reducer, U initial) {
+        for (Entry<K, V> entry : this) {
+            initial = reducer.apply(entry, initial);
+        }
+        return initial;
+    }
+
+    public void each(Consumer<? super Entry<? extends K, ? extends V>> consumer) {
+        for (Entry<K, V> entry : this) {
+            consumer.accept(entry);
+        }
+    }
+
+    private boolean assertAVLProperties(int node) {
+        if (node == NIL) {
+            return true;
+        }
+        int skew = skewOf(node);
+        return assertAVLProperties(left[node]) && assertAVLProperties(right[node]) && skew >= -1 && skew <= 1;
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// the elements are split by hash across independent HashSet stripes, each one guarded by its own lock.
+// Operations on different stripes never wait on each other; traversals copy one stripe at a time,
+// so they are weakly consistent: every stripe is a snapshot, the whole set may not be
+public class ConcurrentHashSet<T> implements Iterable<T> {
+    private static final int DEFAULT_CONCURRENCY = 64;
+
+    private static class Stripe<_T> {
+        final HashSet<_T> set;
+        int len;
+
+        Stripe(HashSet.Resize resize) {
+            set = new HashSet<>(resize);
+        }
+    }
+
+    private final Stripe<T>[] stripes;
+    private final HashSet.Resize resize;
+
+    public ConcurrentHashSet() {
+        this(DEFAULT_CONCURRENCY, HashSet.Resize.STOP_THE_WORLD);
+    }
+
+    // 'concurrency' is rounded up to a power of two
+    @SuppressWarnings("unchecked")
+    public ConcurrentHashSet(int concurrency, HashSet.Resize resize) {
+        int size = concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        this.resize = resize;
+        stripes = (Stripe<T>[]) new Stripe<?>[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe<>(resize);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentHashSet<Integer> set = new ConcurrentHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            set.add(i);
+        }
+        set.remove(3);
+        set.each(i -> System.out.print(i + " "));
+        System.out.println();
+        System.out.println("size => " + set.size() + "\tcontains 3 => " + set.contains(3));
+
+        ConcurrentHashSet<Integer> odds = set.filter(i -> (i & 1) == 1);
+        ConcurrentHashSet<Integer> squares = set.map(i -> i * i);
+        System.out.println("odd squares count => " + odds.intersection(squares).size());
+        System.out.println("the sum is -> " + set.reduce((i, acc) -> i + acc, Integer.valueOf(0)));
+        System.out.println();
+
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        System.out.println("Ingestion benchmark: " + threads + " threads, " + opsPerThread + " ops each (50% add, 40% contains, 10% remove)");
+
+        HashSet<Integer> locked = new HashSet<>();
+        Object lock = new Object();
+        long time = runBenchmark(threads, opsPerThread, new Op() {
+            public void apply(int op, int key) {
+                synchronized (lock) {
+                    if (op < 5) {
+                        locked.add(key);
+                    } else if (op < 9) {
+                        locked.contains(key);
+                    } else {
+                        locked.remove(key);
+                    }
+                }
+            }
+        });
+        System.out.println("single lock HashSet => " + time / 1e6 + "ms");
+
+        ConcurrentHashSet<Integer> striped = new ConcurrentHashSet<>();
+        time = runBenchmark(threads, opsPerThread, new Op() {
+            public void apply(int op, int key) {
+                if (op < 5) {
+                    striped.add(key);
+                } else if (op < 9) {
+                    striped.contains(key);
+                } else {
+                    striped.remove(key);
+                }
+            }
+        });
+        System.out.println("ConcurrentHashSet => " + time / 1e6 + "ms");
+    }
+
+    private interface Op {
+        void apply(int op, int key);
+    }
+
+    private static long runBenchmark(int threads, int opsPerThread, Op op) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                int x = seed * 0x9E3779B9 + 1;
+                for (int i = 0; i < opsPerThread; i++) {
+                    x ^= x << 13;
+                    x ^= x >>> 17;
+                    x ^= x << 5;
+                    op.apply(Math.floorMod(x, 10), (x >>> 8) & 0xFFFFF);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (var worker : workers) {
+            worker.start();
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Stripe<T> stripeOf(Object o) {
+        int h = HashSet.hash(o) * 0x85EBCA6B;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    public boolean add(T el) {
+        var stripe = stripeOf(el);
+        synchronized (stripe) {
+            if (stripe.set.add(el)) {
+                stripe.len++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean remove(Object o) {
+        var stripe = stripeOf(o);
+        synchronized (stripe) {
+            if (stripe.set.remove(o)) {
+                stripe.len--;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean contains(Object o) {
+        var stripe = stripeOf(o);
+        synchronized (stripe) {
+            return stripe.set.contains(o);
+        }
+    }
+
+    // not atomic: the stripes are counted one after the other
+    public int size() {
+        int size = 0;
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.len;
+            }
+        }
+        return size;
+    }
+
+    private ArrayList<T> snapshot(Stripe<T> stripe) {
+        ArrayList<T> copy = new ArrayList<>();
+        synchronized (stripe) {
+            for (T el : stripe.set) {
+                copy.add(el);
+            }
+        }
+        return copy;
+    }
+
+    // user code never runs while a stripe is locked, a stripe is copied when the iterator reaches it
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            int next = 0;
+            Iterator<T> current = null;
+
+            @Override
+            public boolean hasNext() {
+                while (current == null || !current.hasNext()) {
+                    if (next == stripes.length) {
+                        return false;
+                    }
+                    current = snapshot(stripes[next++]).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    public <U> ConcurrentHashSet<U> map(Function<? super T, ? extends U> f) {
+        ConcurrentHashSet<U> mapped = new ConcurrentHashSet<>(stripes.length, resize);
+        for (T t : this) {
+            mapped.add(f.apply(t));
+        }
+        return mapped;
+    }
+
+    public ConcurrentHashSet<T> filter(Predicate<? super T> p) {
+        ConcurrentHashSet<T> filtered = new ConcurrentHashSet<>(stripes.length, resize);
+        for (T el : this) {
+            if (p.test(el)) {
+                filtered.add(el);
+            }
+        }
+        return filtered;
+    }
+
+    public <U> U reduce(BiFunction<? super T, ? super U, ? extends U> reducer, U initial) {
+        for (T t : this) {
+            initial = reducer.apply(t, initial);
+        }
+        return initial;
+    }
+
+    public void each(Consumer<? super T> consumer) {
+        for (T t : this) {
+            consumer.accept(t);
+        }
+    }
+
+    public ConcurrentHashSet<T> intersection(ConcurrentHashSet<?> s2) {
+        ConcurrentHashSet<T> result = new ConcurrentHashSet<>(stripes.length, resize);
+        for (T el : this) {
+            if (s2.contains(el)) {
+                result.add(el);
+            }
+        }
+        return result;
+    }
+
+    public ConcurrentHashSet<T> union(ConcurrentHashSet<? extends T> s2) {
+        ConcurrentHashSet<T> result = new ConcurrentHashSet<>(stripes.length, resize);
+        for (T el : this) {
+            result.add(el);
+        }
+        for (T el : s2) {
+            result.add(el);
+        }
+        return result;
+    }
+
+    public ConcurrentHashSet<T> difference(ConcurrentHashSet<?> s2) {
+        ConcurrentHashSet<T> result = new ConcurrentHashSet<>(stripes.length, resize);
+        for (T el : this) {
+            if (!s2.contains(el)) {
+                result.add(el);
+            }
+        }
+        return result;
+    }
+
+    public ConcurrentHashSet<T> symmetricalDifference(ConcurrentHashSet<? extends T> s2) {
+        ConcurrentHashSet<T> result = new ConcurrentHashSet<>(stripes.length, resize);
+        for (T el : this) {
+            if (!s2.contains(el)) {
+                result.add(el);
+            }
+        }
+        for (T el : s2) {
+            if (!contains(el)) {
+                result.add(el);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// bounded multi producer multi consumer queue (Vyukov): a power of two ring where every slot has a sequence
+// number telling whose turn it is. A slot at position p is free for the producer of p when its sequence is p
+// and full for the consumer of p when it is p + 1, the consumer then hands it to the producer of
+// p + capacity. Producers and consumers only race on their own counter with a CAS, never on each other,
+// and a full or empty ring answers false/null instead of waiting
+public class ConcurrentRingBuffer<T> {
+
+    // a counter followed by 7 longs of padding, so the tail bumped by the producers and the head bumped by
+    // the consumers don't end up on the same 64 bytes cache line and invalidate each other at every CAS
+    @SuppressWarnings("unused")
+    private static final class PaddedCounter extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final PaddedCounter head = new PaddedCounter(); // next position to poll
+    private final PaddedCounter tail = new PaddedCounter(); // next position to offer
+
+    // 'capacity' is rounded up to a power of two, at least 2: with a single slot the sequence a consumer
+    // leaves behind (p + 1) would also read as full for position p
+    public ConcurrentRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentRingBuffer<Integer> ring = new ConcurrentRingBuffer<>(6);
+        int i = 0;
+        while (ring.offer(i)) {
+            i++;
+        }
+        System.out.println("capacity => " + ring.capacity() + "\toffered before full => " + i + "\tsize => " + ring.size());
+        System.out.println("poll => " + ring.poll() + "\tpoll => " + ring.poll());
+        ring.offer(100);
+        System.out.print("drainTo(3) =>");
+        int drained = ring.drainTo(el -> System.out.print(" " + el), 3);
+        System.out.println("\tdrained => " + drained + "\tsize => " + ring.size());
+        ring.drainTo(el -> {}, Integer.MAX_VALUE);
+        System.out.println("is empty => " + ring.isEmpty() + "\tpoll => " + ring.poll());
+
+        Queue<Object> nulls = new Queue<>();
+        for (int j = 0; j < 20; j++) {
+            nulls.enqueue(j % 3 == 0 ? null : j);
+        }
+        int count = 0;
+        while (!nulls.isEmpty()) {
+            nulls.dequeue();
+            count++;
+        }
+        System.out.println("Queue keeps the enqueued nulls across growth => " + (count == 20));
+        System.out.println();
+
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int itemsPerProducer = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        System.out.println("Hand-off benchmark: " + producers + " producers, " + consumers + " consumers, " + itemsPerProducer + " items each");
+
+        Queue<Integer> queue = new Queue<>();
+        Object lock = new Object();
+        int bound = 1 << 10;
+        long time = runBenchmark(producers, consumers, itemsPerProducer, item -> {
+            synchronized (lock) {
+                // bounded like the ring, the Queue alone would grow without limit
+                if (queue.size() == bound) {
+                    return false;
+                }
+                queue.enqueue(item);
+                return true;
+            }
+        }, sink -> {
+            synchronized (lock) {
+                int taken = 0;
+                while (taken < 64 && !queue.isEmpty()) {
+                    sink.accept(queue.dequeue());
+                    taken++;
+                }
+                return taken;
+            }
+        });
+        System.out.println("locked Queue => " + time / 1e6 + "ms");
+
+        ConcurrentRingBuffer<Integer> handOff = new ConcurrentRingBuffer<>(bound);
+        time = runBenchmark(producers, consumers, itemsPerProducer, handOff::offer, sink -> handOff.drainTo(sink, 64));
+        System.out.println("ConcurrentRingBuffer => " + time / 1e6 + "ms");
+    }
+
+    private interface Producer {
+        boolean offer(Integer item);
+    }
+
+    private interface Drainer {
+        int drainTo(Consumer<Integer> sink);
+    }
+
+    // every item is offered once and drained once, the consumers stop when they have seen them all
+    private static long runBenchmark(int producers, int consumers, int itemsPerProducer, Producer producer, Drainer drainer) throws InterruptedException {
+        long total = (long) producers * itemsPerProducer;
+        AtomicLong consumed = new AtomicLong();
+        AtomicLong checksum = new AtomicLong();
+        Thread[] workers = new Thread[producers + consumers];
+        for (int t = 0; t < producers; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    Integer item = i;
+                    while (!producer.offer(item)) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        for (int t = producers; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                long[] sum = new long[1];
+                while (consumed.get() < total) {
+                    int taken = drainer.drainTo(item -> sum[0] += item);
+                    if (taken == 0) {
+                        Thread.yield();
+                    } else {
+                        consumed.addAndGet(taken);
+                    }
+                }
+                checksum.addAndGet(sum[0]);
+            });
+        }
+        long start = System.nanoTime();
+        for (var worker : workers) {
+            worker.start();
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        long time = System.nanoTime() - start;
+        long expected = producers * ((long) itemsPerProducer * (itemsPerProducer - 1) / 2);
+        if (checksum.get() != expected) {
+            throw new IllegalStateException("lost or duplicated items, checksum " + checksum.get() + " instead of " + expected);
+        }
+        return time;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    // a snapshot, it can be stale by the time it is returned
+    public int size() {
+        while (true) {
+            long before = tail.get();
+            long polled = head.get();
+            if (tail.get() == before) {
+                return (int) Math.max(0, Math.min(before - polled, buffer.length));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // false when the ring is full. The null is the answer of poll() on an empty ring, it can't be an element
+    public boolean offer(T el) {
+        if (el == null) {
+            throw new IllegalArgumentException("null elements can't be told apart from an empty ring");
+        }
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[slot] = el;
+                    // the volatile write publishes the element to the consumer that reads this sequence
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the consumer of the previous lap didn't free it yet
+                return false;
+            } else {
+                // another producer took this position
+                position = tail.get();
+            }
+        }
+    }
+
+    // null when the ring is empty
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = head.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T el = (T) buffer[slot];
+                    buffer[slot] = null;
+                    sequences.set(slot, position + buffer.length);
+                    return el;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                // its producer didn't publish it yet
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    // up to 'limit' elements in FIFO order, returns how many. The run of published slots from the head is
+    // claimed with a single CAS, so a batch costs one contended operation instead of one per element.
+    // The whole run is taken out and its slots handed back to the producers before the consumer sees any:
+    // a throwing consumer can't leave slots claimed forever, the rest of its batch is dropped like in
+    // BlockingQueue.drainTo
+    @SuppressWarnings("unchecked")
+    public int drainTo(Consumer<? super T> consumer, int limit) {
+        int max = Math.min(limit, buffer.length);
+        while (true) {
+            long position = head.get();
+            int ready = 0;
+            while (ready < max && sequences.get((int) (position + ready) & mask) == position + ready + 1) {
+                ready++;
+            }
+            if (ready == 0) {
+                return 0;
+            }
+            if (!head.compareAndSet(position, position + ready)) {
+                continue;
+            }
+            Object[] batch = new Object[ready];
+            for (int i = 0; i < ready; i++) {
+                int slot = (int) (position + i) & mask;
+                batch[i] = buffer[slot];
+                buffer[slot] = null;
+                sequences.set(slot, position + i + buffer.length);
+            }
+            for (var el : batch) {
+                consumer.accept((T) el);
+            }
+            return ready;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.Iterator;
+
+// lazy skip list (Herlihy, Lev, Luchangco, Shavit): writers lock only the predecessors of the node they
+// link or unlink, readers never lock. A node is logically in the map once 'fullyLinked' and until 'marked',
+// readers skip everything else. Iteration walks the bottom level, it is weakly consistent: it never fails
+// because of concurrent updates and sees every entry that stays in the map for the whole visit
+public class ConcurrentSkipListMap<K extends Comparable<? super K>, V> implements Iterable<Entry<K, V>> {
+    private static final int MAX_LEVEL = 31;
+
+    private static class Node<_K, _V> {
+        final _K key;
+        final _V value;
+        final AtomicReferenceArray<Node<_K, _V>> next;
+        final int topLevel;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile boolean marked = false;
+        volatile boolean fullyLinked = false;
+
+        Node(_K key, _V value, int topLevel) {
+            this.key = key;
+            this.value = value;
+            this.topLevel = topLevel;
+            next = new AtomicReferenceArray<>(topLevel + 1);
+        }
+
+        boolean isLive() {
+            return fullyLinked && !marked;
+        }
+    }
+
+    // sentinels, their keys are never looked at: head is smaller and tail bigger than any key
+    private final Node<K, V> head = new Node<>(null, null, MAX_LEVEL);
+    private final Node<K, V> tail = new Node<>(null, null, MAX_LEVEL);
+    private final AtomicInteger len = new AtomicInteger();
+    // highest level used so far, descents start here instead of MAX_LEVEL. It is raised before a node gets linked
+    private final AtomicInteger highestLevel = new AtomicInteger();
+
+    public ConcurrentSkipListMap() {
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            head.next.set(level, tail);
+        }
+        head.fullyLinked = true;
+        tail.fullyLinked = true;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentSkipListMap<Integer, String> map = new ConcurrentSkipListMap<>();
+        map.add(1, "Hello");
+        map.add(3, ", ");
+        map.add(6, "World");
+        map.add(7, "!");
+
+        for (var entry : map) {
+            System.out.print(entry.getValue());
+        }
+        System.out.println();
+        System.out.println("get(6) => " + map.get(6) + "\tcontains(5) => " + map.contains(5));
+        System.out.println("first => " + map.first().getKey() + "\tlast => " + map.last().getKey());
+        System.out.println("floor(5) => " + map.floor(5).getKey() + "\tceiling(5) => " + map.ceiling(5).getKey());
+        System.out.println("lower(6) => " + map.lower(6).getKey() + "\thigher(6) => " + map.higher(6).getKey());
+        for (var entry : map.subMap(2, 7)) {
+            System.out.println("subMap(2, 7) Key := " + entry.getKey() + "\tValue := '" + entry.getValue() + "'");
+        }
+        map.remove(6);
+        map.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := '" + entry.getValue() + "'"));
+        System.out.println("The sum of all str lengths is := " + map.reduce((entry, acc) -> acc + entry.getValue().length(), Integer.valueOf(0)));
+        System.out.println();
+
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int keys = 1 << 16;
+        System.out.println("Mixed benchmark: " + threads + " threads, " + opsPerThread + " ops each (90% reads, 10% writes)");
+
+        TreeMap<Integer, Integer> tree = new TreeMap<>();
+        ConcurrentSkipListMap<Integer, Integer> skipList = new ConcurrentSkipListMap<>();
+        for (int i = 0; i < keys; i += 2) {
+            tree.add(i, i);
+            skipList.add(i, i);
+        }
+        Object lock = new Object();
+        long time = runBenchmark(threads, opsPerThread, keys, (op, key) -> {
+            synchronized (lock) {
+                if (op < 90) {
+                    tree.contains(key);
+                } else if (op < 95) {
+                    tree.add(key, key);
+                } else {
+                    tree.remove(key);
+                }
+            }
+        });
+        System.out.println("single lock TreeMap => " + time / 1e6 + "ms");
+        time = runBenchmark(threads, opsPerThread, keys, (op, key) -> {
+            if (op < 90) {
+                skipList.contains(key);
+            } else if (op < 95) {
+                skipList.add(key, key);
+            } else {
+                skipList.remove(key);
+            }
+        });
+        System.out.println("ConcurrentSkipListMap => " + time / 1e6 + "ms");
+    }
+
+    private interface Op {
+        void apply(int op, int key);
+    }
+
+    private static long runBenchmark(int threads, int opsPerThread, int keys, Op op) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                var random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    op.apply(random.nextInt(100), random.nextInt(keys));
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (var worker : workers) {
+            worker.start();
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // geometric with p = 1/2
+    private static int randomLevel() {
+        int bits = ThreadLocalRandom.current().nextInt();
+        return Math.min(Integer.numberOfTrailingZeros(bits), MAX_LEVEL);
+    }
+
+    private boolean isBefore(Node<K, V> node, K key) {
+        return node != tail && node.key.compareTo(key) < 0;
+    }
+
+    // fills the predecessors and successors of 'key' on every level, returns the highest level where it was found
+    private int find(K key, Node<K, V>[] preds, Node<K, V>[] succs) {
+        int found = -1;
+        Node<K, V> pred = head;
+        for (int level = highestLevel.get(); level >= 0; level--) {
+            Node<K, V> current = pred.next.get(level);
+            while (isBefore(current, key)) {
+                pred = current;
+                current = pred.next.get(level);
+            }
+            if (found == -1 && current != tail && current.key.compareTo(key) == 0) {
+                found = level;
+            }
+            preds[level] = pred;
+            succs[level] = current;
+        }
+        return found;
+    }
+
+    // lock free descent, the node of 'key' if it is in the map
+    private Node<K, V> findNode(K key) {
+        Node<K, V> pred = head;
+        for (int level = highestLevel.get(); level >= 0; level--) {
+            Node<K, V> current = pred.next.get(level);
+            while (isBefore(current, key)) {
+                pred = current;
+                current = pred.next.get(level);
+            }
+            if (current != tail && current.key.compareTo(key) == 0) {
+                return current.isLive() ? current : null;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return len.get();
+    }
+
+    public boolean isEmpty() {
+        return len.get() == 0;
+    }
+
+    public boolean contains(K key) {
+        return findNode(key) != null;
+    }
+
+    public V get(K key) {
+        var node = findNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean add(K key, V value) {
+        int topLevel = randomLevel();
+        for (int highest = highestLevel.get(); topLevel > highest && !highestLevel.compareAndSet(highest, topLevel); ) {
+            highest = highestLevel.get();
+        }
+        Node<K, V>[] preds = (Node<K, V>[]) new Node<?, ?>[MAX_LEVEL + 1];
+        Node<K, V>[] succs = (Node<K, V>[]) new Node<?, ?>[MAX_LEVEL + 1];
+        while (true) {
+            int found = find(key, preds, succs);
+            if (found != -1) {
+                var node = succs[found];
+                if (!node.marked) {
+                    while (!node.fullyLinked) {
+                        Thread.onSpinWait(); // someone else is linking the same key right now
+                    }
+                    return false;
+                }
+                continue; // being removed, try again once it is gone
+            }
+            int highestLocked = -1;
+            try {
+                boolean valid = true;
+                for (int level = 0; valid && level <= topLevel; level++) {
+                    var pred = preds[level];
+                    var succ = succs[level];
+                    pred.lock.lock();
+                    highestLocked = level;
+                    valid = !pred.marked && !succ.marked && pred.next.get(level) == succ;
+                }
+                if (!valid) {
+                    continue;
+                }
+                Node<K, V> node = new Node<>(key, value, topLevel);
+                for (int level = 0; level <= topLevel; level++) {
+                    node.next.set(level, succs[level]);
+                }
+                for (int level = 0; level <= topLevel; level++) {
+                    preds[level].next.set(level, node);
+                }
+                node.fullyLinked = true;
+                len.incrementAndGet();
+                return true;
+            } finally {
+                for (int level = 0; level <= highestLocked; level++) {
+                    preds[level].lock.unlock();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean remove(K key) {
+        Node<K, V>[] preds = (Node<K, V>[]) new Node<?, ?>[MAX_LEVEL + 1];
+        Node<K, V>[] succs = (Node<K, V>[]) new Node<?, ?>[MAX_LEVEL + 1];
+        Node<K, V> victim = null;
+        boolean isMarked = false;
+        while (true) {
+            int found = find(key, preds, succs);
+            if (!isMarked) {
+                if (found == -1) {
+                    return false;
+                }
+                victim = succs[found];
+                // only a fully linked node found at its own top level can be removed
+                if (!victim.fullyLinked || victim.topLevel != found || victim.marked) {
+                    return false;
+                }
+                victim.lock.lock();
+                if (victim.marked) {
+                    victim.lock.unlock();
+                    return false;
+                }
+                victim.marked = true; // from now on the key is not in the map
+                isMarked = true;
+            }
+            int highestLocked = -1;
+            try {
+                boolean valid = true;
+                for (int level = 0; valid && level <= victim.topLevel; level++) {
+                    var pred = preds[level];
+                    pred.lock.lock();
+                    highestLocked = level;
+                    valid = !pred.marked && pred.next.get(level) == victim;
+                }
+                if (!valid) {
+                    continue;
+                }
+                for (int level = victim.topLevel; level >= 0; level--) {
+                    preds[level].next.set(level, victim.next.get(level));
+                }
+                victim.lock.unlock();
+                len.decrementAndGet();
+                return true;
+            } finally {
+                for (int level = 0; level <= highestLocked; level++) {
+                    preds[level].lock.unlock();
+                }
+            }
+        }
+    }
+
+    // first live node of the bottom level starting from 'node' included
+    private Node<K, V> skipDead(Node<K, V> node) {
+        while (node != tail && !node.isLive()) {
+            node = node.next.get(0);
+        }
+        return node;
+    }
+
+    // last node with a key < 'key' (<= if 'inclusive'), head if there is none. It may be dead
+    private Node<K, V> predecessor(K key, boolean inclusive) {
+        Node<K, V> pred = head;
+        for (int level = highestLevel.get(); level >= 0; level--) {
+            Node<K, V> current = pred.next.get(level);
+            while (current != tail && (key == null || current.key.compareTo(key) < (inclusive ? 1 : 0))) {
+                pred = current;
+                current = pred.next.get(level);
+            }
+        }
+        return pred;
+    }
+
+    private Entry<K, V> entryOf(Node<K, V> node) {
+        return node == head || node == tail ? null : new Entry<>(node.key, node.value);
+    }
+
+    private Entry<K, V> below(K key, boolean inclusive) {
+        var node = predecessor(key, inclusive);
+        while (node != head && !node.isLive()) {
+            node = predecessor(node.key, false); // removed under our feet, look further down
+        }
+        return entryOf(node);
+    }
+
+    private Entry<K, V> above(K key, boolean inclusive) {
+        return entryOf(skipDead(predecessor(key, !inclusive).next.get(0)));
+    }
+
+    public Entry<K, V> first() {
+        return entryOf(skipDead(head.next.get(0)));
+    }
+
+    public Entry<K, V> last() {
+        return below(null, true);
+    }
+
+    // greatest key <= 'key'
+    public Entry<K, V> floor(K key) {
+        return below(key, true);
+    }
+
+    // smallest key >= 'key'
+    public Entry<K, V> ceiling(K key) {
+        return above(key, true);
+    }
+
+    // greatest key < 'key'
+    public Entry<K, V> lower(K key) {
+        return below(key, false);
+    }
+
+    // smallest key > 'key'
+    public Entry<K, V> higher(K key) {
+        return above(key, false);
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return subMap(null, null).iterator();
+    }
+
+    // lazy in order visit of the keys in [from, to), a null bound leaves that side open
+    public Iterable<Entry<K, V>> subMap(K from, K to) {
+        return new Iterable<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    Node<K, V> current = skipDead((from == null ? head : predecessor(from, false)).next.get(0));
+
+                    @Override
+                    public boolean hasNext() {
+                        return current != tail && (to == null || current.key.compareTo(to) < 0);
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        var entry = new Entry<>(current.key, current.value);
+                        current = skipDead(current.next.get(0));
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+
+    // keys < 'to'
+    public Iterable<Entry<K, V>> headMap(K to) {
+        return subMap(null, to);
+    }
+
+    // keys >= 'from'
+    public Iterable<Entry<K, V>> tailMap(K from) {
+        return subMap(from, null);
+    }
+
+    public <U> U reduce(BiFunction<? super Entry<? extends K, ? extends V>, ? super U, ? extends U> reducer, U initial) {
+        for (Entry<K, V> entry : this) {
+            initial = reducer.apply(entry, initial);
+        }
+        return initial;
+    }
+
+    public void each(Consumer<? super Entry<? extends K, ? extends V>> consumer) {
+        for (Entry<K, V> entry : this) {
+            consumer.accept(entry);
+        }
+    }
+}
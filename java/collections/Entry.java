@@ -14,4 +14,9 @@ public class Entry<K, V> {
     public V getValue() {
         return value;
     }
+
+    // only the maps owning the entry update it, in place
+    void setValue(V value) {
+        this.value = value;
+    }
 }
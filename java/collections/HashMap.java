@@ -0,0 +1,327 @@
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.Iterator;
+import java.util.ConcurrentModificationException;
+
+// same open addressing table of HashSet, the values live in a parallel array indexed by slot
+public class HashMap<K, V> implements Iterable<Entry<K, V>> {
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_THRESHOLD = 0.8;
+    private static final double DEFAULT_SHRINK_THRESHOLD = 0.15;
+
+    private byte[] control;
+    private Object[] keys;
+    private Object[] values;
+    private double threshold = DEFAULT_THRESHOLD;
+    private double shrinkThreshold = DEFAULT_SHRINK_THRESHOLD;
+    private int len;
+    private int dead;
+    // inserts and deletes so far, a function that changed it under computeIfAbsent or merge invalidated the
+    // slot they found before calling it
+    private int modCount = 0;
+
+    public HashMap() {
+        this(DEFAULT_SIZE);
+    }
+
+    private HashMap(int size) {
+        control = HashSet.emptyControl(size);
+        keys = new Object[size];
+        values = new Object[size];
+        len = 0;
+    }
+
+    // takes the arrays as they are, 'values' is parallel to 'keys'
+    private HashMap(byte[] control, Object[] keys, Object[] values, int len, int dead) {
+        this.control = control;
+        this.keys = keys;
+        this.values = values;
+        this.len = len;
+        this.dead = dead;
+    }
+
+    public static void main(String[] args) {
+        HashMap<String, Integer> map = new HashMap<>();
+        map.put("Hello", 1);
+        map.put(", ", 2);
+        map.put("World", 3);
+        map.put("!", 4);
+
+        for (var entry : map) {
+            System.out.println("Key := '" + entry.getKey() + "'\tValue := " + entry.getValue());
+        }
+        System.out.println();
+
+        System.out.println("get('World') => " + map.get("World"));
+        System.out.println("put('World', 30) => " + map.put("World", 30));
+        System.out.println("get('World') => " + map.get("World"));
+        System.out.println("get('Missing') => " + map.get("Missing"));
+        System.out.println();
+
+        System.out.println("Trying 'merge' to count words");
+        HashMap<String, Integer> counter = new HashMap<>();
+        for (var word : "the cat and the dog and the bird".split(" ")) {
+            counter.merge(word, 1, (a, b) -> a + b);
+        }
+        counter.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := " + entry.getValue()));
+        System.out.println();
+
+        System.out.println("Trying 'computeIfAbsent' to group words by length");
+        HashMap<Integer, ArrayList<String>> groups = new HashMap<>();
+        for (var word : "the cat and the dog and the bird".split(" ")) {
+            groups.computeIfAbsent(word.length(), k -> new ArrayList<>()).add(word);
+        }
+        groups.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue count := " + entry.getValue().reduce((w, acc) -> acc + 1, 0)));
+        System.out.println();
+
+        System.out.println("Trying 'map', 'filterByValues' and 'reduce'");
+        var doubled = counter.map(n -> n * 2).filterByValues(n -> n > 2);
+        doubled.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := " + entry.getValue()));
+        System.out.println("the sum is -> " + counter.reduce((entry, acc) -> acc + entry.getValue(), Integer.valueOf(0)));
+        System.out.println();
+
+        System.out.println("Trying the 'remove' method");
+        counter.remove("the");
+        counter.remove("cat");
+        counter.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := " + entry.getValue()));
+
+        HashMap<Integer, Integer> big = new HashMap<>();
+        TreeMap<Integer, Integer> tree = new TreeMap<>();
+        for (int i = 0; i < 1e4; i++) {
+            big.put(i, i);
+            tree.add(i, i);
+        }
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < 1e4; i++) {
+            sum += big.get(i);
+        }
+        System.out.println("1e4 HashMap lookups took " + (System.nanoTime() - start) / 1e6 + "ms, sum => " + sum);
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < 1e4; i++) {
+            if (tree.contains(i)) {
+                found++;
+            }
+        }
+        System.out.println("1e4 TreeMap lookups took " + (System.nanoTime() - start) / 1e6 + "ms, found => " + found);
+    }
+
+    private void rehash(int size) {
+        var oldControl = control;
+        var oldKeys = keys;
+        var oldValues = values;
+        control = HashSet.emptyControl(size);
+        keys = new Object[size];
+        values = new Object[size];
+        dead = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldControl[i] >= 0) {
+                int slot = HashSet.findFree(control, HashSet.hash(oldKeys[i]));
+                control[slot] = oldControl[i];
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void growth() {
+        rehash(keys.length << 1);
+    }
+
+    private void shrink() {
+        rehash(keys.length >> 1);
+    }
+
+    private void insert(int hash, K key, V value) {
+        int slot = HashSet.findFree(control, hash);
+        if (control[slot] == HashSet.TOMBSTONE) {
+            dead--;
+        }
+        control[slot] = HashSet.fingerprint(hash);
+        keys[slot] = key;
+        values[slot] = value;
+        len++;
+        modCount++;
+        if ((len + dead) / (double) keys.length >= threshold) {
+            if (len / (double) keys.length >= threshold / 2) {
+                growth();
+            } else {
+                rehash(keys.length); // mostly tombstones, compact them
+            }
+        }
+    }
+
+    private void delete(int slot) {
+        if (HashSet.canBeEmptied(control, slot)) {
+            control[slot] = HashSet.EMPTY;
+        } else {
+            control[slot] = HashSet.TOMBSTONE;
+            dead++;
+        }
+        keys[slot] = null;
+        values[slot] = null;
+        len--;
+        modCount++;
+        if (len / (double) keys.length <= shrinkThreshold && keys.length > DEFAULT_SIZE) {
+            shrink();
+        }
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return len == 0;
+    }
+
+    public boolean contains(Object key) {
+        return HashSet.find(control, keys, key, HashSet.hash(key)) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int slot = HashSet.find(control, keys, key, HashSet.hash(key));
+        return slot >= 0 ? (V) values[slot] : null;
+    }
+
+    // returns the previous value, null if the key was missing
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int hash = HashSet.hash(key);
+        int slot = HashSet.find(control, keys, key, hash);
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        insert(hash, key, value);
+        return null;
+    }
+
+    public boolean remove(Object key) {
+        int slot = HashSet.find(control, keys, key, HashSet.hash(key));
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> f) {
+        int hash = HashSet.hash(key);
+        int slot = HashSet.find(control, keys, key, hash);
+        if (slot >= 0) {
+            return (V) values[slot];
+        }
+        int expected = modCount;
+        V value = f.apply(key);
+        checkModCount(expected);
+        if (value != null) {
+            insert(hash, key, value);
+        }
+        return value;
+    }
+
+    // a null result from the remapping function removes the key
+    @SuppressWarnings("unchecked")
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> f) {
+        int hash = HashSet.hash(key);
+        int slot = HashSet.find(control, keys, key, hash);
+        if (slot < 0) {
+            insert(hash, key, value);
+            return value;
+        }
+        int expected = modCount;
+        V merged = f.apply((V) values[slot], value);
+        checkModCount(expected);
+        if (merged == null) {
+            delete(slot);
+        } else {
+            values[slot] = merged;
+        }
+        return merged;
+    }
+
+    private void checkModCount(int expected) {
+        if (modCount != expected) {
+            throw new ConcurrentModificationException("the function added or removed keys of this map");
+        }
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return new Iterator<Entry<K, V>>() {
+            int seen = 0;
+            int cur = 0;
+
+            @Override
+            public boolean hasNext() {
+                return seen < len;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Entry<K, V> next() {
+                while (control[cur] < 0) {
+                    cur++;
+                }
+                seen++;
+                var entry = new Entry<K, V>((K) keys[cur], (V) values[cur]);
+                cur++;
+                return entry;
+            }
+        };
+    }
+
+    // the keys don't change, so the table is copied as is and nothing is rehashed
+    @SuppressWarnings("unchecked")
+    public <U> HashMap<K, U> map(Function<? super V, ? extends U> f) {
+        var mappedValues = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (control[i] >= 0) {
+                mappedValues[i] = f.apply((V) values[i]);
+            }
+        }
+        return new HashMap<>(control.clone(), keys.clone(), mappedValues, len, dead);
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashMap<K, V> filterByKeys(Predicate<? super K> p) {
+        HashMap<K, V> filtered = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (control[i] >= 0 && p.test((K) keys[i])) {
+                filtered.insert(HashSet.hash(keys[i]), (K) keys[i], (V) values[i]);
+            }
+        }
+        return filtered;
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashMap<K, V> filterByValues(Predicate<? super V> p) {
+        HashMap<K, V> filtered = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (control[i] >= 0 && p.test((V) values[i])) {
+                filtered.insert(HashSet.hash(keys[i]), (K) keys[i], (V) values[i]);
+            }
+        }
+        return filtered;
+    }
+
+    public <U> U reduce(BiFunction<? super Entry<? extends K, ? extends V>, ? super U, ? extends U> reducer, U initial) {
+        for (Entry<K, V> entry : this) {
+            initial = reducer.apply(entry, initial);
+        }
+        return initial;
+    }
+
+    public void each(Consumer<? super Entry<? extends K, ? extends V>> consumer) {
+        for (Entry<K, V> entry : this) {
+            consumer.accept(entry);
+        }
+    }
+}
@@ -3,21 +3,54 @@ import java.util.function.Predicate;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.Iterator;
+import java.util.Arrays;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
 public class HashSet<T> implements Iterable<T> {
-    private static final Object TOMBSTONE = new Object();
+    // every slot has a control byte: EMPTY, TOMBSTONE or the fingerprint (0..127) of the element stored there.
+    // Control bytes are read 8 at a time as a long and matched with bit tricks (SWAR)
+    static final byte EMPTY = (byte) 0x80;
+    static final byte TOMBSTONE = (byte) 0xFE;
+    static final int GROUP_SIZE = 8;
+
+    private static final long LSB = 0x0101010101010101L;
+    private static final long MSB = 0x8080808080808080L;
+    private static final VarHandle GROUP = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
 
     private static final int DEFAULT_SIZE = 16;
     private static final double DEFAULT_THRESHOLD = 0.8;
     private static final double DEFAULT_SHRINK_THRESHOLD = 0.15;
-    private static final int BIG_PRIME = 115249;
 
+    // slots of the old table moved at every add/remove while an incremental resize is in progress
+    private static final int MIGRATION_STEP = 64;
+
+    // STOP_THE_WORLD rebuilds the table inside the add/remove that triggers the resize,
+    // INCREMENTAL keeps the old table around and moves it a few slots at a time
+    public enum Resize { STOP_THE_WORLD, INCREMENTAL }
+
+    private final Resize resize;
+    private byte[] control;
     private Object[] array;
     private double threshold = DEFAULT_THRESHOLD;
     private double shrinkThreshold = DEFAULT_SHRINK_THRESHOLD;
     private int len;
+    private int dead;
+
+    // table being migrated, null when no incremental resize is in progress
+    private byte[] oldControl;
+    private Object[] oldArray;
+    private int oldLen;
+    private int migrated;
 
     public HashSet() {
+        this(Resize.STOP_THE_WORLD);
+    }
+
+    public HashSet(Resize resize) {
+        this.resize = resize;
+        control = emptyControl(DEFAULT_SIZE);
         array = new Object[DEFAULT_SIZE];
         len = 0;
     }
@@ -52,6 +85,31 @@ public class HashSet<T> implements Iterable<T> {
       var sum = set.reduce((i, acc) -> i + acc, Double.valueOf(.0));
       System.out.println("the sum is -> " + sum);
 
+      HashSet<Integer> big = new HashSet<>();
+      for (int i = 0; i < 1e6; i++) {
+          big.add(i);
+      }
+      long start = System.nanoTime();
+      int hits = 0;
+      for (int i = 0; i < 1e6; i++) {
+          if (big.contains(-i - 1)) {
+              hits++;
+          }
+      }
+      System.out.println("1e6 misses on 1e6 elements took " + (System.nanoTime() - start) / 1e6 + "ms, hits => " + hits);
+
+      for (var resize : Resize.values()) {
+          HashSet<Integer> timed = new HashSet<>(resize);
+          long worst = 0;
+          start = System.nanoTime();
+          for (int i = 0; i < 4e6; i++) {
+              long before = System.nanoTime();
+              timed.add(i);
+              worst = Math.max(worst, System.nanoTime() - before);
+          }
+          System.out.println(resize + ": 4e6 adds took " + (System.nanoTime() - start) / 1e6 + "ms, slowest add " + worst / 1e6 + "ms");
+      }
+
     }
 
     private static void exampleWithStrings() {
@@ -86,89 +144,226 @@ public class HashSet<T> implements Iterable<T> {
 
     }
 
-    private static int getIndex(Object o, int i, int size) {
-        return Math.floorMod(BIG_PRIME * i ^ o.hashCode(), size);
-    } 
+    static int hash(Object o) {
+        int h = o.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
 
-    @SuppressWarnings("unchecked")
-    private void growth() {
-       var old = array;
-       array = new Object[array.length << 1];
-       len = 0;
-       for (var entry : old) {
-           if (entry != null && entry != TOMBSTONE) {
-               add((T) entry);
-           }
-       }
+    // the low 7 bits of the hash are stored in the control byte, the rest selects the first group to probe
+    static byte fingerprint(int hash) {
+        return (byte) (hash & 0x7F);
     }
 
-    @SuppressWarnings("unchecked")
-    private void shrink() {
-        var old = array;
-        array = new Object[array.length >> 1];
-        len = 0;
-        for (var entry : old) {
-            if (entry != null && entry != TOMBSTONE) {
-                add((T) entry);
+    static long readGroup(byte[] control, int group) {
+        return (long) GROUP.get(control, group * GROUP_SIZE);
+    }
+
+    // one high bit set for every control byte of the group equal to 'fingerprint'.
+    // It can report a false positive right after a real match, the caller has to check the element anyway
+    static long matchFingerprint(long group, byte fingerprint) {
+        long x = group ^ (LSB * fingerprint);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    static long matchEmpty(long group) {
+        return group & (~group << 6) & MSB;
+    }
+
+    static long matchEmptyOrTombstone(long group) {
+        return group & MSB;
+    }
+
+    static int slotOf(int group, long match) {
+        return group * GROUP_SIZE + (Long.numberOfTrailingZeros(match) >>> 3);
+    }
+
+    // triangular probing over the groups, it visits every group once when their number is a power of two
+    // and stops at the first group with an EMPTY slot: nothing was ever inserted past it
+    static int find(byte[] control, Object[] array, Object o, int hash) {
+        int mask = control.length / GROUP_SIZE - 1;
+        int group = (hash >>> 7) & mask;
+        byte fingerprint = fingerprint(hash);
+        for (int step = 1; ; step++) {
+            long word = readGroup(control, group);
+            for (long match = matchFingerprint(word, fingerprint); match != 0; match &= match - 1) {
+                int slot = slotOf(group, match);
+                if (o.equals(array[slot])) {
+                    return slot;
+                }
             }
+            if (matchEmpty(word) != 0 || step > mask) {
+                return -1;
+            }
+            group = (group + step) & mask;
         }
     }
 
-    public boolean add(T el) {
-        for(int i = 0; i < array.length; i++) {
-            int index = getIndex(el, i, array.length);
-            if (array[index] == null || array[index] == TOMBSTONE) {
-                array[index] = el;
-                break;
-            } else if (array[index].equals(el)) {
-                return false; // elem already present
+    static int findFree(byte[] control, int hash) {
+        int mask = control.length / GROUP_SIZE - 1;
+        int group = (hash >>> 7) & mask;
+        for (int step = 1; ; step++) {
+            long match = matchEmptyOrTombstone(readGroup(control, group));
+            if (match != 0) {
+                return slotOf(group, match);
             }
+            group = (group + step) & mask;
+        }
+    }
+
+    // a slot can go back to EMPTY only if its group still has an EMPTY slot, otherwise some probe
+    // sequence may have walked through the group and the slot must become a TOMBSTONE
+    static boolean canBeEmptied(byte[] control, int slot) {
+        return matchEmpty(readGroup(control, slot / GROUP_SIZE)) != 0;
+    }
+
+    static byte[] emptyControl(int size) {
+        byte[] control = new byte[size];
+        Arrays.fill(control, EMPTY);
+        return control;
+    }
+
+    // tombstones are not copied, the new table only holds live elements
+    private void rehash(int size) {
+        if (resize == Resize.INCREMENTAL) {
+            oldControl = control;
+            oldArray = array;
+            oldLen = len;
+            migrated = 0;
+            control = emptyControl(size);
+            array = new Object[size];
+            dead = 0;
+            return;
         }
+        var previousControl = control;
+        var previous = array;
+        control = emptyControl(size);
+        array = new Object[size];
+        dead = 0;
+        for (int i = 0; i < previous.length; i++) {
+            if (previousControl[i] >= 0) {
+                int slot = findFree(control, hash(previous[i]));
+                control[slot] = previousControl[i];
+                array[slot] = previous[i];
+            }
+        }
+    }
+
+    private boolean isMigrating() {
+        return oldArray != null;
+    }
+
+    // moves up to 'slots' slots of the old table into the new one
+    private void migrate(int slots) {
+        int end = Math.min(migrated + slots, oldArray.length);
+        for (; migrated < end; migrated++) {
+            if (oldControl[migrated] >= 0) {
+                int slot = findFree(control, hash(oldArray[migrated]));
+                control[slot] = oldControl[migrated];
+                array[slot] = oldArray[migrated];
+                oldControl[migrated] = TOMBSTONE;
+                oldArray[migrated] = null;
+                oldLen--;
+            }
+        }
+        if (migrated == oldArray.length) {
+            oldControl = null;
+            oldArray = null;
+        }
+    }
+
+    private void growth() {
+        rehash(array.length << 1);
+    }
+
+    private void shrink() {
+        rehash(array.length >> 1);
+    }
+
+    public boolean add(T el) {
+        if (isMigrating()) {
+            migrate(MIGRATION_STEP);
+        }
+        int hash = hash(el);
+        if (find(control, array, el, hash) >= 0 || (isMigrating() && find(oldControl, oldArray, el, hash) >= 0)) {
+            return false; // elem already present
+        }
+        int slot = findFree(control, hash);
+        if (control[slot] == TOMBSTONE) {
+            dead--;
+        }
+        control[slot] = fingerprint(hash);
+        array[slot] = el;
         len++;
-        if (len / (double) array.length >= threshold) {
-            growth();
+        int live = len - oldLen;
+        if ((live + dead) / (double) array.length >= threshold) {
+            if (isMigrating()) {
+                migrate(oldArray.length); // the new table is full before the end of the migration, finish it now
+                live = len;
+            }
+            if (live / (double) array.length >= threshold / 2) {
+                growth();
+            } else {
+                rehash(array.length); // mostly tombstones, compact them
+            }
         }
         return true;
     }
 
     public boolean remove(Object o) {
-        for(int i = 0; i < array.length; i++) {
-            int index = getIndex(o, i, array.length);
-            if (array[index] != null && array[index] != TOMBSTONE && array[index].equals(o)) {
-                array[index] = TOMBSTONE;
-                len--;
-                if(len / (double) array.length <= shrinkThreshold && array.length > DEFAULT_SIZE) {
-                    shrink();
-                    return true;
-                }
+        if (isMigrating()) {
+            migrate(MIGRATION_STEP);
+        }
+        int hash = hash(o);
+        int slot = find(control, array, o, hash);
+        if (slot >= 0) {
+            if (canBeEmptied(control, slot)) {
+                control[slot] = EMPTY;
+            } else {
+                control[slot] = TOMBSTONE;
+                dead++;
             }
+            array[slot] = null;
+        } else if (isMigrating() && (slot = find(oldControl, oldArray, o, hash)) >= 0) {
+            oldControl[slot] = TOMBSTONE; // the old table is thrown away at the end of the migration
+            oldArray[slot] = null;
+            oldLen--;
+        } else {
+            return false;
         }
-        return false;
+        len--;
+        if(!isMigrating() && len / (double) array.length <= shrinkThreshold && array.length > DEFAULT_SIZE) {
+            shrink();
+        }
+        return true;
     }
 
     public boolean contains(Object o) {
-        for(int i = 0; i < array.length; i++) {
-            int index = getIndex(o, i, array.length);
-            if (array[index] != null && array[index] != TOMBSTONE && array[index].equals(o)) {
-                return true;
-            }
-        }
-        return false;
+        int hash = hash(o);
+        return find(control, array, o, hash) >= 0 || (isMigrating() && find(oldControl, oldArray, o, hash) >= 0);
     }
 
     public void dbg() {
         System.out.println("PRINT: ");
+        dbg(control, array);
+        if (isMigrating()) {
+            System.out.println("OLD TABLE, migrated up to index{" + migrated + "}: ");
+            dbg(oldControl, oldArray);
+        }
+    }
+
+    private static void dbg(byte[] control, Object[] array) {
         for(int i = 0; i < array.length; i++) {
             System.out.print("index{" + i + "} ");
-            if(array[i] == null)
+            if(control[i] == EMPTY)
                 System.out.println("null ");
-            else if(array[i] == TOMBSTONE)
+            else if(control[i] == TOMBSTONE)
                 System.out.println("DEAD");
             else
                 System.out.println(array[i].toString());
         }
     }
 
+    // during a migration the elements still in the old table come after the ones of the new table
     public Iterator<T> iterator() {
         return new Iterator<T>() {
             int seen = 0;
@@ -183,11 +378,14 @@ public class HashSet<T> implements Iterable<T> {
             @Override
             public T next() {
                 while(true) {
-                    if (array[cur] != null && array[cur] != TOMBSTONE) {
+                    if (cur < array.length) {
+                        if (control[cur] >= 0) {
+                            seen++;
+                            return (T) array[cur++];
+                        }
+                    } else if (oldControl[cur - array.length] >= 0) {
                         seen++;
-                        T el = (T) array[cur];
-                        cur++;
-                        return el;
+                        return (T) oldArray[cur++ - array.length];
                     }
                     cur++;
                 }
@@ -196,7 +394,7 @@ public class HashSet<T> implements Iterable<T> {
     }
 
     public <U> HashSet<U> map(Function<? super T, ? extends U> f) {
-        HashSet<U> mapped = new HashSet<>();
+        HashSet<U> mapped = new HashSet<>(resize);
         for(T t : this) {
             mapped.add(f.apply(t));
         }
@@ -204,7 +402,7 @@ public class HashSet<T> implements Iterable<T> {
     }
 
     public HashSet<T> filter(Predicate<? super T> p) {
-        HashSet<T> filtered = new HashSet<>();
+        HashSet<T> filtered = new HashSet<>(resize);
         for(T el : this) {
             if(p.test(el)) {
                 filtered.add(el);
@@ -227,7 +425,7 @@ public class HashSet<T> implements Iterable<T> {
     }
 
     public HashSet<T> intersection(HashSet<?> s2) {
-        HashSet<T> result = new HashSet<>();
+        HashSet<T> result = new HashSet<>(resize);
         for (T el : this) {
             if(s2.contains(el)) {
                 result.add(el);
@@ -237,7 +435,7 @@ public class HashSet<T> implements Iterable<T> {
     }
 
     public HashSet<T> union(HashSet<? extends T> s2) {
-        HashSet<T> result = new HashSet<>();
+        HashSet<T> result = new HashSet<>(resize);
         for (T el : this) {
             result.add(el);
         }
@@ -248,7 +446,7 @@ public class HashSet<T> implements Iterable<T> {
     }
 
     public HashSet<T> difference(HashSet<?> s2) {
-        HashSet<T> result = new HashSet<>();
+        HashSet<T> result = new HashSet<>(resize);
         for (T el : this) {
             if(!s2.contains(el)) {
                 result.add(el);
@@ -258,7 +456,7 @@ public class HashSet<T> implements Iterable<T> {
     }
 
     public HashSet<T> symmetricalDifference(HashSet<? extends T> s2) {
-        HashSet<T> result = new HashSet<>();
+        HashSet<T> result = new HashSet<>(resize);
         for (T el : this) {
             if(!s2.contains(el)) {
                 result.add(el);
@@ -0,0 +1,232 @@
+import java.util.Random;
+
+// array backed min heap where every node has 'arity' children: the children of i are at arity * i + 1 ..
+// arity * i + arity. A wider node makes the tree shallower, offer climbs log_d(n) levels and poll goes down
+// as many comparing d children at each: 2 is the classic binary heap, 4 is usually faster on big heaps
+// because the children of a node share a cache line
+public class Heap<T extends Comparable<? super T>> {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int DEFAULT_ARITY = 4;
+
+    private Object[] array;
+    private int len = 0;
+    private final int arity;
+
+    public Heap() {
+        this(DEFAULT_ARITY);
+    }
+
+    public Heap(int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2, got " + arity);
+        }
+        this.arity = arity;
+        array = new Object[DEFAULT_SIZE];
+    }
+
+    // heapify in O(n): sifting down every inner node from the last one costs O(n) in total,
+    // n log n for offering them one by one
+    public Heap(ArrayList<? extends T> elements, int arity) {
+        this(arity);
+        array = new Object[Math.max(DEFAULT_SIZE, elements.size())];
+        for (var el : elements) {
+            array[len++] = el;
+        }
+        heapify();
+    }
+
+    public static void main(String[] args) {
+        Heap<Integer> heap = new Heap<>(2);
+        for (int i : new int[] { 5, 3, 8, 1, 9, 2 }) {
+            heap.offer(i);
+        }
+        System.out.println("peek => " + heap.peek() + "\tsize => " + heap.size());
+        while (!heap.isEmpty()) {
+            System.out.print(heap.poll() + " ");
+        }
+        System.out.println();
+
+        ArrayList<String> words = new ArrayList<>();
+        for (var word : "the quick brown fox jumps over the lazy dog".split(" ")) {
+            words.add(word);
+        }
+        Heap<String> wordHeap = new Heap<>(words, 3);
+        ArrayList<String> more = new ArrayList<>();
+        more.add("again");
+        more.add("zebra");
+        wordHeap.offerAll(more);
+        System.out.print("heapify + offerAll =>");
+        while (!wordHeap.isEmpty()) {
+            System.out.print(" " + wordHeap.poll());
+        }
+        System.out.println();
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = random.nextInt();
+        }
+        System.out.println(n + " offers followed by " + n + " polls, 3 rounds");
+        for (int round = 0; round < 3; round++) {
+            for (int arity : new int[] { 2, 4, 8 }) {
+                Heap<Integer> h = new Heap<>(arity);
+                long start = System.nanoTime();
+                for (var key : keys) {
+                    h.offer(key);
+                }
+                while (!h.isEmpty()) {
+                    h.poll();
+                }
+                System.out.print("Heap(" + arity + ") => " + (System.nanoTime() - start) / 1e6 + "ms\t");
+            }
+            // the composite key (value, sequence number) keeps the duplicates apart
+            TreeMap<Long, Integer> tree = new TreeMap<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                tree.add(((long) keys[i] << 32) | i, keys[i]);
+            }
+            while (tree.size() > 0) {
+                tree.remove(tree.first().getKey());
+            }
+            System.out.println("TreeMap => " + (System.nanoTime() - start) / 1e6 + "ms");
+        }
+        // descending keys, the worst case for offer: every one climbs up to the root
+        ArrayList<Integer> descending = new ArrayList<>();
+        for (int i = n; i > 0; i--) {
+            descending.add(i);
+        }
+        long start = System.nanoTime();
+        Heap<Integer> heapified = new Heap<>(descending, DEFAULT_ARITY);
+        System.out.print("heapify of " + heapified.size() + " descending keys => " + (System.nanoTime() - start) / 1e6 + "ms\t");
+        start = System.nanoTime();
+        Heap<Integer> offered = new Heap<>(DEFAULT_ARITY);
+        for (var key : descending) {
+            offered.offer(key);
+        }
+        System.out.println("one offer at a time => " + (System.nanoTime() - start) / 1e6 + "ms");
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return len == 0;
+    }
+
+    public void offer(T el) {
+        if (len == array.length) {
+            growth(len + 1);
+        }
+        array[len] = el;
+        siftUp(len++);
+    }
+
+    // k offers cost k log n, rebuilding the whole heap n + k: the cheaper of the two
+    public void offerAll(ArrayList<? extends T> elements) {
+        int k = elements.size();
+        if (len + k > array.length) {
+            growth(len + k);
+        }
+        int log = 32 - Integer.numberOfLeadingZeros(len + k);
+        if ((long) k * log > len + k) {
+            for (var el : elements) {
+                array[len++] = el;
+            }
+            heapify();
+        } else {
+            for (var el : elements) {
+                array[len] = el;
+                siftUp(len++);
+            }
+        }
+    }
+
+    // null when the heap is empty
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        return len == 0 ? null : (T) array[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        if (len == 0) {
+            return null;
+        }
+        T min = (T) array[0];
+        var last = array[--len];
+        array[len] = null;
+        if (len > 0) {
+            array[0] = last;
+            siftDown(0);
+        }
+        if (len < array.length / 3 && array.length > DEFAULT_SIZE) {
+            shrink();
+        }
+        return min;
+    }
+
+    private void growth(int needed) {
+        var bigger = new Object[Math.max(array.length << 1, needed)];
+        System.arraycopy(array, 0, bigger, 0, len);
+        array = bigger;
+    }
+
+    private void shrink() {
+        var smaller = new Object[array.length >> 1];
+        System.arraycopy(array, 0, smaller, 0, len);
+        array = smaller;
+    }
+
+    private void heapify() {
+        for (int i = (len - 2) / arity; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(int i, int j) {
+        return ((T) array[i]).compareTo((T) array[j]);
+    }
+
+    // the element moves up while smaller than its parent, the parents move down into the hole
+    @SuppressWarnings("unchecked")
+    private void siftUp(int index) {
+        var el = array[index];
+        while (index > 0) {
+            int parent = (index - 1) / arity;
+            if (((T) el).compareTo((T) array[parent]) >= 0) {
+                break;
+            }
+            array[index] = array[parent];
+            index = parent;
+        }
+        array[index] = el;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void siftDown(int index) {
+        var el = array[index];
+        while (true) {
+            int first = arity * index + 1;
+            if (first >= len) {
+                break;
+            }
+            int smallest = first;
+            int end = Math.min(first + arity, len);
+            for (int child = first + 1; child < end; child++) {
+                if (compare(child, smallest) < 0) {
+                    smallest = child;
+                }
+            }
+            if (((T) array[smallest]).compareTo((T) el) >= 0) {
+                break;
+            }
+            array[index] = array[smallest];
+            index = smallest;
+        }
+        array[index] = el;
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+// d-ary min heap of (priority, value) pairs where offer returns a Handle that always knows its slot in the
+// heap: every swap updates the index of the moved handles. With the slot at hand decreaseKey is a sift up and
+// remove(handle) a swap with the last one and a sift, both O(log n), instead of the remove + add of a
+// TreeMap with (priority, id) composite keys
+public class IndexedPriorityQueue<P extends Comparable<? super P>, V> {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int DEFAULT_ARITY = 4;
+    private static final int REMOVED = -1;
+
+    public static final class Handle<_P, _V> {
+        private _P priority;
+        private final _V value;
+        private int index;
+
+        private Handle(_P priority, _V value, int index) {
+            this.priority = priority;
+            this.value = value;
+            this.index = index;
+        }
+
+        public _P getPriority() {
+            return priority;
+        }
+
+        public _V getValue() {
+            return value;
+        }
+
+        // false once polled or removed
+        public boolean isQueued() {
+            return index != REMOVED;
+        }
+    }
+
+    private Object[] heap = new Object[DEFAULT_SIZE];
+    private int len = 0;
+    private final int arity;
+
+    public IndexedPriorityQueue() {
+        this(DEFAULT_ARITY);
+    }
+
+    public IndexedPriorityQueue(int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2, got " + arity);
+        }
+        this.arity = arity;
+    }
+
+    public static void main(String[] args) {
+        IndexedPriorityQueue<Integer, String> tasks = new IndexedPriorityQueue<>();
+        var write = tasks.offer(30, "write");
+        tasks.offer(20, "read");
+        var flush = tasks.offer(50, "flush");
+        var compact = tasks.offer(40, "compact");
+        tasks.decreaseKey(flush, 10);
+        tasks.remove(compact);
+        System.out.println("peek => " + tasks.peek().getValue() + "\tsize => " + tasks.size() + "\twrite queued => " + write.isQueued());
+        while (!tasks.isEmpty()) {
+            var handle = tasks.poll();
+            System.out.println("Polled => " + handle.getValue() + " (" + handle.getPriority() + ")");
+        }
+        System.out.println("write queued => " + write.isQueued());
+        System.out.println();
+
+        // Dijkstra on a random sparse graph: every improved distance is a decreaseKey
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int degree = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        Random random = new Random(42);
+        int[][] targets = new int[nodes][degree];
+        int[][] weights = new int[nodes][degree];
+        for (int u = 0; u < nodes; u++) {
+            for (int e = 0; e < degree; e++) {
+                targets[u][e] = random.nextInt(nodes);
+                weights[u][e] = 1 + random.nextInt(1000);
+            }
+        }
+        System.out.println("Dijkstra on " + nodes + " nodes with " + degree + " edges each, 3 rounds");
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long withHeap = dijkstra(targets, weights);
+            System.out.print("IndexedPriorityQueue => " + (System.nanoTime() - start) / 1e6 + "ms\t");
+            start = System.nanoTime();
+            long withTree = dijkstraTreeMap(targets, weights);
+            System.out.println("TreeMap => " + (System.nanoTime() - start) / 1e6 + "ms\tsame distances => " + (withHeap == withTree));
+        }
+    }
+
+    // the sum of the shortest distances from node 0 to the reachable nodes
+    @SuppressWarnings("unchecked")
+    private static long dijkstra(int[][] targets, int[][] weights) {
+        int nodes = targets.length;
+        Handle<Long, Integer>[] handles = (Handle<Long, Integer>[]) new Handle<?, ?>[nodes];
+        long[] distance = new long[nodes];
+        Arrays.fill(distance, Long.MAX_VALUE);
+        IndexedPriorityQueue<Long, Integer> queue = new IndexedPriorityQueue<>();
+        distance[0] = 0;
+        handles[0] = queue.offer(0L, 0);
+        long total = 0;
+        while (!queue.isEmpty()) {
+            int u = queue.poll().getValue();
+            total += distance[u];
+            for (int e = 0; e < targets[u].length; e++) {
+                int v = targets[u][e];
+                long candidate = distance[u] + weights[u][e];
+                if (candidate < distance[v]) {
+                    distance[v] = candidate;
+                    if (handles[v] == null) {
+                        handles[v] = queue.offer(candidate, v);
+                    } else {
+                        queue.decreaseKey(handles[v], candidate);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    // the same with the (distance, node) composite key of a TreeMap: a decrease is a remove and an add
+    private static long dijkstraTreeMap(int[][] targets, int[][] weights) {
+        int nodes = targets.length;
+        long[] distance = new long[nodes];
+        Arrays.fill(distance, Long.MAX_VALUE);
+        TreeMap<Long, Integer> queue = new TreeMap<>();
+        distance[0] = 0;
+        queue.add(0L, 0);
+        long total = 0;
+        while (queue.size() > 0) {
+            var first = queue.first();
+            queue.remove(first.getKey());
+            int u = first.getValue();
+            total += distance[u];
+            for (int e = 0; e < targets[u].length; e++) {
+                int v = targets[u][e];
+                long candidate = distance[u] + weights[u][e];
+                if (candidate < distance[v]) {
+                    if (distance[v] != Long.MAX_VALUE) {
+                        queue.remove(distance[v] * nodes + v);
+                    }
+                    distance[v] = candidate;
+                    queue.add(candidate * nodes + v, v);
+                }
+            }
+        }
+        return total;
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return len == 0;
+    }
+
+    public Handle<P, V> offer(P priority, V value) {
+        if (len == heap.length) {
+            var bigger = new Object[heap.length << 1];
+            System.arraycopy(heap, 0, bigger, 0, len);
+            heap = bigger;
+        }
+        var handle = new Handle<P, V>(priority, value, len);
+        heap[len++] = handle;
+        siftUp(handle.index);
+        return handle;
+    }
+
+    // null when the queue is empty
+    public Handle<P, V> peek() {
+        return len == 0 ? null : handleAt(0);
+    }
+
+    // the handle with the smallest priority, null when the queue is empty
+    public Handle<P, V> poll() {
+        if (len == 0) {
+            return null;
+        }
+        var min = handleAt(0);
+        removeAt(0);
+        return min;
+    }
+
+    // 'priority' can't be greater than the current one, that would need a sift down
+    public void decreaseKey(Handle<P, V> handle, P priority) {
+        checkQueued(handle);
+        if (priority.compareTo(handle.priority) > 0) {
+            throw new IllegalArgumentException("decreaseKey from " + handle.priority + " to the greater " + priority);
+        }
+        handle.priority = priority;
+        siftUp(handle.index);
+    }
+
+    public void remove(Handle<P, V> handle) {
+        checkQueued(handle);
+        removeAt(handle.index);
+    }
+
+    private void checkQueued(Handle<P, V> handle) {
+        if (handle.index == REMOVED || handle.index >= len || heap[handle.index] != handle) {
+            throw new NoSuchElementException("the handle of " + handle.value + " isn't in this queue");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Handle<P, V> handleAt(int index) {
+        return (Handle<P, V>) heap[index];
+    }
+
+    // the last handle fills the hole and goes up or down from there
+    private void removeAt(int index) {
+        var removed = handleAt(index);
+        var last = handleAt(--len);
+        heap[len] = null;
+        removed.index = REMOVED;
+        if (index < len) {
+            place(last, index);
+            siftDown(index);
+            siftUp(last.index);
+        }
+        if (len < heap.length / 3 && heap.length > DEFAULT_SIZE) {
+            var smaller = new Object[heap.length >> 1];
+            System.arraycopy(heap, 0, smaller, 0, len);
+            heap = smaller;
+        }
+    }
+
+    private void place(Handle<P, V> handle, int index) {
+        heap[index] = handle;
+        handle.index = index;
+    }
+
+    private void siftUp(int index) {
+        var handle = handleAt(index);
+        while (index > 0) {
+            int parent = (index - 1) / arity;
+            var above = handleAt(parent);
+            if (handle.priority.compareTo(above.priority) >= 0) {
+                break;
+            }
+            place(above, index);
+            index = parent;
+        }
+        place(handle, index);
+    }
+
+    private void siftDown(int index) {
+        var handle = handleAt(index);
+        while (true) {
+            int first = arity * index + 1;
+            if (first >= len) {
+                break;
+            }
+            int smallest = first;
+            int end = Math.min(first + arity, len);
+            for (int child = first + 1; child < end; child++) {
+                if (handleAt(child).priority.compareTo(handleAt(smallest).priority) < 0) {
+                    smallest = child;
+                }
+            }
+            var below = handleAt(smallest);
+            if (below.priority.compareTo(handle.priority) >= 0) {
+                break;
+            }
+            place(below, index);
+            index = smallest;
+        }
+        place(handle, index);
+    }
+}
@@ -0,0 +1,337 @@
+import java.util.function.IntUnaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.PrimitiveIterator;
+
+public class IntHashSet {
+    // keys are stored unboxed, two values are reserved to mark free and removed slots
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = Integer.MIN_VALUE;
+
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_THRESHOLD = 0.7;
+    private static final double DEFAULT_SHRINK_THRESHOLD = 0.15;
+
+    private int[] array;
+    private double threshold = DEFAULT_THRESHOLD;
+    private double shrinkThreshold = DEFAULT_SHRINK_THRESHOLD;
+    private int len;
+    private int dead;
+    // the reserved values can still be elements of the set, they just don't live in the array
+    private boolean hasEmpty, hasTombstone;
+
+    public IntHashSet() {
+        array = new int[DEFAULT_SIZE];
+        len = 0;
+    }
+
+    public static void main(String[] args) {
+        IntHashSet set = new IntHashSet();
+        set.add(1);
+        set.add(4);
+        set.add(8);
+        set.add(0);
+        set.add(Integer.MIN_VALUE);
+
+        set.dbg();
+
+        var iter = set.iterator();
+        while (iter.hasNext()) {
+            System.out.println(iter.nextInt());
+        }
+        System.out.println();
+
+        set.remove(1);
+        set.remove(0);
+        set.each(i -> System.out.println(i));
+        System.out.println();
+
+        IntHashSet doubled = set.map(i -> i << 1);
+        doubled.each(i -> System.out.println(i));
+        System.out.println("the sum is -> " + set.filter(i -> i > 0).reduce((i, acc) -> i + acc, 0));
+
+        IntHashSet other = new IntHashSet();
+        other.add(4);
+        other.add(16);
+        System.out.println("union size => " + set.union(other).size());
+        System.out.println("intersection size => " + set.intersection(other).size());
+        System.out.println("symmetrical difference size => " + set.symmetricalDifference(other).size());
+
+        int n = (int) 1e6;
+        long start = System.nanoTime();
+        IntHashSet ints = new IntHashSet();
+        for (int i = 0; i < n; i++) {
+            ints.add(i * 31);
+        }
+        int hits = 0;
+        for (int i = 0; i < 2 * n; i++) {
+            if (ints.contains(i)) {
+                hits++;
+            }
+        }
+        System.out.println("IntHashSet 1e6 adds + 2e6 lookups took " + (System.nanoTime() - start) / 1e6 + "ms, hits => " + hits);
+
+        start = System.nanoTime();
+        HashSet<Integer> boxed = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            boxed.add(i * 31);
+        }
+        hits = 0;
+        for (int i = 0; i < 2 * n; i++) {
+            if (boxed.contains(i)) {
+                hits++;
+            }
+        }
+        System.out.println("HashSet<Integer> 1e6 adds + 2e6 lookups took " + (System.nanoTime() - start) / 1e6 + "ms, hits => " + hits);
+    }
+
+    private static int getIndex(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static boolean isReserved(int key) {
+        return key == EMPTY || key == TOMBSTONE;
+    }
+
+    // returns true if the presence of the reserved key changed
+    private boolean setReserved(int key, boolean present) {
+        boolean old = key == EMPTY ? hasEmpty : hasTombstone;
+        if (key == EMPTY) {
+            hasEmpty = present;
+        } else {
+            hasTombstone = present;
+        }
+        return old != present;
+    }
+
+    private void rehash(int size) {
+        var old = array;
+        array = new int[size];
+        dead = 0;
+        int mask = size - 1;
+        for (int key : old) {
+            if (!isReserved(key)) {
+                int index = getIndex(key, mask);
+                while (array[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                array[index] = key;
+            }
+        }
+    }
+
+    private void growth() {
+        rehash(array.length << 1);
+    }
+
+    private void shrink() {
+        rehash(array.length >> 1);
+    }
+
+    public int size() {
+        return len + (hasEmpty ? 1 : 0) + (hasTombstone ? 1 : 0);
+    }
+
+    public boolean add(int el) {
+        if (isReserved(el)) {
+            return setReserved(el, true);
+        }
+        int mask = array.length - 1;
+        int free = -1;
+        int index = getIndex(el, mask);
+        for (; array[index] != EMPTY; index = (index + 1) & mask) {
+            if (array[index] == el) {
+                return false; // elem already present
+            }
+            if (array[index] == TOMBSTONE && free < 0) {
+                free = index;
+            }
+        }
+        if (free < 0) {
+            free = index;
+        } else {
+            dead--;
+        }
+        array[free] = el;
+        len++;
+        if ((len + dead) / (double) array.length >= threshold) {
+            if (len / (double) array.length >= threshold / 2) {
+                growth();
+            } else {
+                rehash(array.length); // mostly tombstones, compact them
+            }
+        }
+        return true;
+    }
+
+    public boolean remove(int el) {
+        if (isReserved(el)) {
+            return setReserved(el, false);
+        }
+        int mask = array.length - 1;
+        for (int index = getIndex(el, mask); array[index] != EMPTY; index = (index + 1) & mask) {
+            if (array[index] == el) {
+                // no probe sequence goes past an EMPTY slot, so the tombstone is needed only if the next one is taken
+                if (array[(index + 1) & mask] == EMPTY) {
+                    array[index] = EMPTY;
+                } else {
+                    array[index] = TOMBSTONE;
+                    dead++;
+                }
+                len--;
+                if (len / (double) array.length <= shrinkThreshold && array.length > DEFAULT_SIZE) {
+                    shrink();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(int el) {
+        if (isReserved(el)) {
+            return el == EMPTY ? hasEmpty : hasTombstone;
+        }
+        int mask = array.length - 1;
+        for (int index = getIndex(el, mask); array[index] != EMPTY; index = (index + 1) & mask) {
+            if (array[index] == el) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void dbg() {
+        System.out.println("PRINT: ");
+        System.out.println("reserved{" + EMPTY + "} " + hasEmpty);
+        System.out.println("reserved{" + TOMBSTONE + "} " + hasTombstone);
+        for (int i = 0; i < array.length; i++) {
+            System.out.print("index{" + i + "} ");
+            if (array[i] == EMPTY)
+                System.out.println("null ");
+            else if (array[i] == TOMBSTONE)
+                System.out.println("DEAD");
+            else
+                System.out.println(array[i]);
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            boolean emptyDone = !hasEmpty, tombstoneDone = !hasTombstone;
+            int seen = 0;
+            int cur = 0;
+
+            @Override
+            public boolean hasNext() {
+                return seen < size();
+            }
+
+            @Override
+            public int nextInt() {
+                seen++;
+                if (!emptyDone) {
+                    emptyDone = true;
+                    return EMPTY;
+                }
+                if (!tombstoneDone) {
+                    tombstoneDone = true;
+                    return TOMBSTONE;
+                }
+                while (isReserved(array[cur])) {
+                    cur++;
+                }
+                return array[cur++];
+            }
+        };
+    }
+
+    public IntHashSet map(IntUnaryOperator f) {
+        IntHashSet mapped = new IntHashSet();
+        each(el -> mapped.add(f.applyAsInt(el)));
+        return mapped;
+    }
+
+    public IntHashSet filter(IntPredicate p) {
+        IntHashSet filtered = new IntHashSet();
+        each(el -> {
+            if (p.test(el)) {
+                filtered.add(el);
+            }
+        });
+        return filtered;
+    }
+
+    public int reduce(IntBinaryOperator reducer, int initial) {
+        if (hasEmpty) {
+            initial = reducer.applyAsInt(EMPTY, initial);
+        }
+        if (hasTombstone) {
+            initial = reducer.applyAsInt(TOMBSTONE, initial);
+        }
+        for (int el : array) {
+            if (!isReserved(el)) {
+                initial = reducer.applyAsInt(el, initial);
+            }
+        }
+        return initial;
+    }
+
+    public void each(IntConsumer consumer) {
+        if (hasEmpty) {
+            consumer.accept(EMPTY);
+        }
+        if (hasTombstone) {
+            consumer.accept(TOMBSTONE);
+        }
+        for (int el : array) {
+            if (!isReserved(el)) {
+                consumer.accept(el);
+            }
+        }
+    }
+
+    public IntHashSet intersection(IntHashSet s2) {
+        IntHashSet result = new IntHashSet();
+        each(el -> {
+            if (s2.contains(el)) {
+                result.add(el);
+            }
+        });
+        return result;
+    }
+
+    public IntHashSet union(IntHashSet s2) {
+        IntHashSet result = new IntHashSet();
+        each(el -> result.add(el));
+        s2.each(el -> result.add(el));
+        return result;
+    }
+
+    public IntHashSet difference(IntHashSet s2) {
+        IntHashSet result = new IntHashSet();
+        each(el -> {
+            if (!s2.contains(el)) {
+                result.add(el);
+            }
+        });
+        return result;
+    }
+
+    public IntHashSet symmetricalDifference(IntHashSet s2) {
+        IntHashSet result = new IntHashSet();
+        each(el -> {
+            if (!s2.contains(el)) {
+                result.add(el);
+            }
+        });
+        s2.each(el -> {
+            if (!contains(el)) {
+                result.add(el);
+            }
+        });
+        return result;
+    }
+}
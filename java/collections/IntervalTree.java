@@ -0,0 +1,215 @@
+import java.util.Iterator;
+import java.util.Random;
+
+// an AVL keyed by closed intervals [start, end], ordered by start and then by end. Every node also keeps
+// the greatest end of its subtree, recomputed by the same update() the rotations and fixup already call.
+// A query skips every subtree whose greatest end is before it and, the tree being ordered by start,
+// stops as soon as the starts are after it
+public class IntervalTree<K extends Comparable<? super K>, V> extends AVL<IntervalTree.Interval<K>, V> {
+
+    public static final class Interval<K extends Comparable<? super K>> implements Comparable<Interval<K>> {
+        private final K start, end;
+
+        public Interval(K start, K end) {
+            if (start.compareTo(end) > 0) {
+                throw new IllegalArgumentException("the interval [" + start + ", " + end + "] ends before it starts");
+            }
+            this.start = start;
+            this.end = end;
+        }
+
+        public K getStart() {
+            return start;
+        }
+
+        public K getEnd() {
+            return end;
+        }
+
+        public boolean overlaps(K from, K to) {
+            return start.compareTo(to) <= 0 && from.compareTo(end) <= 0;
+        }
+
+        @Override
+        public int compareTo(Interval<K> other) {
+            int compare = start.compareTo(other.start);
+            return compare != 0 ? compare : end.compareTo(other.end);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + "]";
+        }
+    }
+
+    private static class IntervalNode<_K extends Comparable<? super _K>, _V> extends Node<Interval<_K>, _V> {
+        _K maxEnd;
+
+        IntervalNode(Interval<_K> key, _V value) {
+            super(key, value);
+            maxEnd = key.getEnd();
+        }
+
+        static <_K extends Comparable<? super _K>> _K maxEndOf(Node<Interval<_K>, ?> node) {
+            return node == null ? null : ((IntervalNode<_K, ?>) node).maxEnd;
+        }
+
+        static <_K extends Comparable<? super _K>> _K max(_K a, _K b) {
+            return b == null || a.compareTo(b) >= 0 ? a : b;
+        }
+
+        @Override
+        void update() {
+            super.update();
+            maxEnd = max(max(entry.getKey().getEnd(), maxEndOf(left)), maxEndOf(right));
+        }
+    }
+
+    public static void main(String[] args) {
+        IntervalTree<Integer, String> meetings = new IntervalTree<>();
+        meetings.add(9, 10, "standup");
+        meetings.add(9, 12, "workshop");
+        meetings.add(11, 13, "review");
+        meetings.add(14, 15, "1:1");
+        meetings.add(13, 17, "on call");
+        meetings.remove(9, 12);
+
+        System.out.println("All the meetings");
+        for (var entry : meetings) {
+            System.out.println(entry.getKey() + " => " + entry.getValue());
+        }
+        System.out.println("stabbing(13)");
+        for (var entry : meetings.stabbing(13)) {
+            System.out.println(entry.getKey() + " => " + entry.getValue());
+        }
+        System.out.println("overlapping(10, 11)");
+        for (var entry : meetings.overlapping(10, 11)) {
+            System.out.println(entry.getKey() + " => " + entry.getValue());
+        }
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Random random = new Random(42);
+        IntervalTree<Integer, Integer> ranges = new IntervalTree<>();
+        ArrayList<Interval<Integer>> all = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int start = random.nextInt(100 * n);
+            var interval = new Interval<>(start, start + random.nextInt(1000));
+            if (ranges.add(interval, i)) {
+                all.add(interval);
+            }
+        }
+        System.out.println("Props Holds? => " + assertIntervalProperties(ranges.root));
+        int[] points = new int[1000];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextInt(100 * n);
+        }
+
+        long start = System.nanoTime();
+        long matches = 0;
+        for (int point : points) {
+            for (var entry : ranges.stabbing(point)) {
+                matches++;
+            }
+        }
+        System.out.println(points.length + " stabbing queries on " + ranges.size() + " intervals took " + (System.nanoTime() - start) / 1e6 + "ms, matches => " + matches);
+        start = System.nanoTime();
+        matches = 0;
+        for (int point : points) {
+            for (var interval : all) {
+                if (interval.overlaps(point, point)) {
+                    matches++;
+                }
+            }
+        }
+        System.out.println("the same queries as full scans took " + (System.nanoTime() - start) / 1e6 + "ms, matches => " + matches);
+    }
+
+    @Override
+    Node<Interval<K>, V> newNode(Interval<K> key, V value) {
+        return new IntervalNode<>(key, value);
+    }
+
+    @Override
+    AVL<Interval<K>, V> emptyCopy() {
+        return new IntervalTree<>();
+    }
+
+    public boolean add(K start, K end, V value) {
+        return add(new Interval<>(start, end), value);
+    }
+
+    public boolean remove(K start, K end) {
+        return remove(new Interval<>(start, end));
+    }
+
+    // the intervals containing 'point'
+    public Iterable<Entry<Interval<K>, V>> stabbing(K point) {
+        return overlapping(point, point);
+    }
+
+    // lazy visit, ordered by start, of the intervals sharing at least a point with [from, to].
+    // Each match costs at most one root to leaf walk, O(min(n, (k + 1) log n)) for k matches
+    public Iterable<Entry<Interval<K>, V>> overlapping(K from, K to) {
+        return new Iterable<Entry<Interval<K>, V>>() {
+
+            @Override
+            public Iterator<Entry<Interval<K>, V>> iterator() {
+                return new Iterator<Entry<Interval<K>, V>>() {
+                    // the candidates whose left subtree was already pushed, the smallest start on top
+                    Stack<Node<Interval<K>, V>> stack = new Stack<>();
+                    Node<Interval<K>, V> next = pushCandidates(root);
+
+                    // pushes the left spine of 'node', skipping the subtrees ending before 'from'
+                    Node<Interval<K>, V> pushCandidates(Node<Interval<K>, V> node) {
+                        while (node != null && IntervalNode.maxEndOf(node).compareTo(from) >= 0) {
+                            stack.push(node);
+                            node = node.left;
+                        }
+                        return advance();
+                    }
+
+                    Node<Interval<K>, V> advance() {
+                        while (!stack.isEmpty()) {
+                            var node = stack.pop();
+                            // every start from here on is greater, nothing can overlap anymore
+                            if (node.entry.getKey().getStart().compareTo(to) > 0) {
+                                return null;
+                            }
+                            for (var iter = node.right; iter != null && IntervalNode.maxEndOf(iter).compareTo(from) >= 0; iter = iter.left) {
+                                stack.push(iter);
+                            }
+                            if (node.entry.getKey().getEnd().compareTo(from) >= 0) {
+                                return node;
+                            }
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<Interval<K>, V> next() {
+                        var current = next;
+                        next = advance();
+                        return current.entry;
+                    }
+                };
+            }
+        };
+    }
+
+    // AVL balance and the greatest end of every subtree
+    private static <_K extends Comparable<? super _K>> boolean assertIntervalProperties(Node<Interval<_K>, ?> node) {
+        if (node == null) {
+            return true;
+        }
+        int skew = Node.getSkew(node);
+        _K maxEnd = IntervalNode.max(IntervalNode.max(node.entry.getKey().getEnd(), IntervalNode.maxEndOf(node.left)), IntervalNode.maxEndOf(node.right));
+        return skew >= -1 && skew <= 1 && maxEnd.equals(IntervalNode.maxEndOf(node))
+            && assertIntervalProperties(node.left) && assertIntervalProperties(node.right);
+    }
+}
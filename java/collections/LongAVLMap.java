@@ -0,0 +1,480 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Arrays;
+
+// the CompactAVL layout with primitive long keys: the descents compare two longs inline, no boxing and
+// no compareTo call through an interface. Keys never come back boxed either, the navigation methods
+// return a long and the iterators are PrimitiveIterator.OfLong.
+// A node key and its two links sit next to each other in the same long[], so every level of a
+// descent touches a single cache line, like a binary search on a sorted array does
+public class LongAVLMap<V> {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int NIL = -1;
+    // an AVL tree with n nodes is less than 1.45 log2(n + 2) high, an int size never gets close to 64 levels
+    private static final int MAX_HEIGHT = 64;
+
+    // node i key is at 2 * i, at 2 * i + 1 its left child is in the high 32 bits and its right one in the low ones
+    private long[] tree = new long[DEFAULT_SIZE << 1];
+    private Object[] values = new Object[DEFAULT_SIZE];
+    private byte[] height = new byte[DEFAULT_SIZE];
+    private int root = NIL;
+    private int size;
+    private int used; // slots handed out at least once, the ones from here on were never used
+    private int free = NIL; // head of the free list, chained through 'left'
+    // the nodes above the key of the last descent, root first. Reused by every insert and delete
+    private final int[] path = new int[MAX_HEIGHT];
+    private int depth;
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    public static void main(String[] args) {
+        LongAVLMap<String> map = new LongAVLMap<>();
+        map.add(1_700_000_000_000L, "boot");
+        map.add(1_700_000_000_500L, "login");
+        map.add(1_700_000_003_000L, "logout");
+        map.put(1_700_000_000_500L, "login again");
+        map.each((key, value) -> System.out.println("Key := " + key + "\tValue := " + value));
+        System.out.println("floorKey(1700000001000) => " + map.floorKey(1_700_000_001_000L, -1)
+                           + "\thigherKey(1700000003000) => " + map.higherKey(1_700_000_003_000L, -1));
+        System.out.print("keys in [1700000000000, 1700000003000) =>");
+        for (var iter = map.keys(1_700_000_000_000L, 1_700_000_003_000L); iter.hasNext();) {
+            System.out.print(" " + iter.nextLong());
+        }
+        System.out.println();
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        long[] sorted = new long[n];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            timestamp += 1 + random.nextInt(1000);
+            sorted[i] = timestamp;
+        }
+        long[] queries = new long[n];
+        for (int i = 0; i < n; i++) {
+            queries[i] = sorted[random.nextInt(n)] + (random.nextBoolean() ? 0 : 1);
+        }
+        LongAVLMap<Long> primitive = new LongAVLMap<>();
+        AVL<Long, Long> boxed = new AVL<>();
+        for (int i = 0; i < n; i++) {
+            primitive.add(sorted[i], sorted[i]);
+            boxed.add(sorted[i], sorted[i]);
+        }
+
+        System.out.println(n + " lookups on " + n + " timestamps, half of them missing");
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (long query : queries) {
+                if (Arrays.binarySearch(sorted, query) >= 0) {
+                    found++;
+                }
+            }
+            System.out.print("sorted long[] => " + (System.nanoTime() - start) / 1e6 + "ms (" + found + ")");
+            start = System.nanoTime();
+            found = 0;
+            for (long query : queries) {
+                if (primitive.contains(query)) {
+                    found++;
+                }
+            }
+            System.out.print("\tLongAVLMap => " + (System.nanoTime() - start) / 1e6 + "ms (" + found + ")");
+            start = System.nanoTime();
+            found = 0;
+            for (long query : queries) {
+                if (boxed.contains(query)) {
+                    found++;
+                }
+            }
+            System.out.println("\tAVL<Long, Long> => " + (System.nanoTime() - start) / 1e6 + "ms (" + found + ")");
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // plain descent, lookups don't record the path
+    private int find(long key) {
+        int iter = root;
+        while (iter != NIL) {
+            long current = keyOf(iter);
+            if (key < current) {
+                iter = leftOf(iter);
+            } else if (key > current) {
+                iter = rightOf(iter);
+            } else {
+                return iter;
+            }
+        }
+        return NIL;
+    }
+
+    public boolean contains(long key) {
+        return find(key) != NIL;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int node = find(key);
+        return node == NIL ? null : (V) values[node];
+    }
+
+    public boolean add(long key, V value) {
+        if (descend(key) != NIL) {
+            return false;
+        }
+        insertAtPath(key, value);
+        return true;
+    }
+
+    // returns the previous value, null if the key was missing
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int node = descend(key);
+        if (node != NIL) {
+            V old = (V) values[node];
+            values[node] = value;
+            return old;
+        }
+        insertAtPath(key, value);
+        return null;
+    }
+
+    public boolean remove(long key) {
+        int node = descend(key);
+        if (node == NIL) {
+            return false;
+        }
+        size--;
+        int parent = depth > 0 ? path[depth - 1] : NIL;
+        if (leftOf(node) == NIL || rightOf(node) == NIL) {
+            replaceChild(parent, node, leftOf(node) != NIL ? leftOf(node) : rightOf(node));
+        } else {
+            // the successor takes the place of 'node', the path goes on down to the successor parent
+            int index = depth++;
+            int successorParent = node;
+            int successor = rightOf(node);
+            while (leftOf(successor) != NIL) {
+                path[depth++] = successor;
+                successorParent = successor;
+                successor = leftOf(successor);
+            }
+            if (successorParent == node) {
+                setRight(node, rightOf(successor));
+            } else {
+                setLeft(successorParent, rightOf(successor));
+            }
+            setLeft(successor, leftOf(node));
+            setRight(successor, rightOf(node));
+            height[successor] = height[node];
+            path[index] = successor;
+            replaceChild(parent, node, successor);
+        }
+        release(node);
+        rebalancePath();
+        return true;
+    }
+
+    public long firstKey() {
+        if (root == NIL) {
+            throw new NoSuchElementException("empty map");
+        }
+        int iter = root;
+        while (leftOf(iter) != NIL) {
+            iter = leftOf(iter);
+        }
+        return keyOf(iter);
+    }
+
+    public long lastKey() {
+        if (root == NIL) {
+            throw new NoSuchElementException("empty map");
+        }
+        int iter = root;
+        while (rightOf(iter) != NIL) {
+            iter = rightOf(iter);
+        }
+        return keyOf(iter);
+    }
+
+    // greatest key <= 'key', 'otherwise' if there is none
+    public long floorKey(long key, long otherwise) {
+        return nearest(key, true, true, otherwise);
+    }
+
+    // smallest key >= 'key', 'otherwise' if there is none
+    public long ceilingKey(long key, long otherwise) {
+        return nearest(key, false, true, otherwise);
+    }
+
+    // greatest key < 'key', 'otherwise' if there is none
+    public long lowerKey(long key, long otherwise) {
+        return nearest(key, true, false, otherwise);
+    }
+
+    // smallest key > 'key', 'otherwise' if there is none
+    public long higherKey(long key, long otherwise) {
+        return nearest(key, false, false, otherwise);
+    }
+
+    // single descent, remembering the last node seen on the right side of 'key'
+    private long nearest(long key, boolean below, boolean inclusive, long otherwise) {
+        int best = NIL;
+        int iter = root;
+        while (iter != NIL) {
+            long current = keyOf(iter);
+            if (current == key && inclusive) {
+                return current;
+            }
+            if (below ? current < key : current > key) {
+                best = iter;
+                iter = below ? rightOf(iter) : leftOf(iter);
+            } else {
+                iter = below ? leftOf(iter) : rightOf(iter);
+            }
+        }
+        return best == NIL ? otherwise : keyOf(best);
+    }
+
+    // all the keys in order
+    public PrimitiveIterator.OfLong keys() {
+        return keys(Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    // lazy in order visit of the keys in [from, to): seeks 'from' in O(log n) and stops at 'to'
+    public PrimitiveIterator.OfLong keys(long from, long to) {
+        return keys(from, to, true);
+    }
+
+    private PrimitiveIterator.OfLong keys(long from, long to, boolean bounded) {
+        return new PrimitiveIterator.OfLong() {
+            // the nodes >= 'from' whose left subtree still has to be visited, the smallest on top
+            int[] stack = new int[MAX_HEIGHT];
+            int top = seek();
+
+            int seek() {
+                int pushed = 0;
+                int iter = root;
+                while (iter != NIL) {
+                    if (keyOf(iter) >= from) {
+                        stack[pushed++] = iter;
+                        iter = leftOf(iter);
+                    } else {
+                        iter = rightOf(iter);
+                    }
+                }
+                return pushed;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return top > 0 && (!bounded || keyOf(stack[top - 1]) < to);
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int current = stack[--top];
+                for (int iter = rightOf(current); iter != NIL; iter = leftOf(iter)) {
+                    stack[top++] = iter;
+                }
+                return keyOf(current);
+            }
+        };
+    }
+
+    // in order, without boxing the keys
+    @SuppressWarnings("unchecked")
+    public void each(EntryConsumer<? super V> consumer) {
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0;
+        int current = root;
+        while (top > 0 || current != NIL) {
+            while (current != NIL) {
+                stack[top++] = current;
+                current = leftOf(current);
+            }
+            current = stack[--top];
+            consumer.accept(keyOf(current), (V) values[current]);
+            current = rightOf(current);
+        }
+    }
+
+    // walks down to 'key' recording the nodes above it in 'path', returns its node or NIL if it is missing
+    private int descend(long key) {
+        depth = 0;
+        int iter = root;
+        while (iter != NIL) {
+            long current = keyOf(iter);
+            if (key == current) {
+                return iter;
+            }
+            path[depth++] = iter;
+            iter = key < current ? leftOf(iter) : rightOf(iter);
+        }
+        return NIL;
+    }
+
+    // links a new leaf under the last node of the path, after a descend that missed 'key'
+    private void insertAtPath(long key, V value) {
+        int node = allocate(key, value);
+        size++;
+        if (depth == 0) {
+            root = node;
+            return;
+        }
+        int parent = path[depth - 1];
+        if (key < keyOf(parent)) {
+            setLeft(parent, node);
+        } else {
+            setRight(parent, node);
+        }
+        rebalancePath();
+    }
+
+    private int allocate(long key, V value) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = leftOf(node);
+        } else {
+            if (used == values.length) {
+                growth();
+            }
+            node = used++;
+        }
+        tree[node << 1] = key;
+        values[node] = value;
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        height[node] = 0;
+        return node;
+    }
+
+    private void release(int node) {
+        values[node] = null;
+        setRight(node, NIL);
+        setLeft(node, free);
+        free = node;
+    }
+
+    private void growth() {
+        int capacity = values.length << 1;
+        long[] newTree = new long[capacity << 1];
+        Object[] newValues = new Object[capacity];
+        byte[] newHeight = new byte[capacity];
+        System.arraycopy(tree, 0, newTree, 0, used << 1);
+        System.arraycopy(values, 0, newValues, 0, used);
+        System.arraycopy(height, 0, newHeight, 0, used);
+        tree = newTree;
+        values = newValues;
+        height = newHeight;
+    }
+
+    private long keyOf(int node) {
+        return tree[node << 1];
+    }
+
+    private int leftOf(int node) {
+        return (int) (tree[(node << 1) + 1] >> 32);
+    }
+
+    private int rightOf(int node) {
+        return (int) tree[(node << 1) + 1];
+    }
+
+    private void setLeft(int node, int child) {
+        int links = (node << 1) + 1;
+        tree[links] = ((long) child << 32) | (tree[links] & 0xFFFFFFFFL);
+    }
+
+    private void setRight(int node, int child) {
+        int links = (node << 1) + 1;
+        tree[links] = (tree[links] & 0xFFFFFFFF00000000L) | (child & 0xFFFFFFFFL);
+    }
+
+    private int heightOf(int node) {
+        return node == NIL ? -1 : height[node];
+    }
+
+    private int skewOf(int node) {
+        return heightOf(leftOf(node)) - heightOf(rightOf(node));
+    }
+
+    private void updateHeight(int node) {
+        height[node] = (byte) (1 + Math.max(heightOf(leftOf(node)), heightOf(rightOf(node))));
+    }
+
+    private int rotateClockwise(int node) {
+        int pivot = leftOf(node);
+        setLeft(node, rightOf(pivot));
+        setRight(pivot, node);
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private int rotateCounterClockwise(int node) {
+        int pivot = rightOf(node);
+        setRight(node, leftOf(pivot));
+        setLeft(pivot, node);
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private int fixup(int node) {
+        updateHeight(node);
+        int skewFactor = skewOf(node);
+        if (skewFactor < -1) {
+            if (skewOf(rightOf(node)) > 0) {
+                setRight(node, rotateClockwise(rightOf(node)));
+            }
+            node = rotateCounterClockwise(node);
+        } else if (skewFactor > 1) {
+            if (skewOf(leftOf(node)) < 0) {
+                setLeft(node, rotateCounterClockwise(leftOf(node)));
+            }
+            node = rotateClockwise(node);
+        }
+        return node;
+    }
+
+    // bottom up along the path, it stops as soon as a subtree is as high as it was before
+    // because nothing above it can have changed
+    private void rebalancePath() {
+        for (int i = depth - 1; i >= 0; i--) {
+            int node = path[i];
+            int oldHeight = height[node];
+            int balanced = fixup(node);
+            if (balanced != node) {
+                replaceChild(i > 0 ? path[i - 1] : NIL, node, balanced);
+            }
+            if (height[balanced] == oldHeight) {
+                break;
+            }
+        }
+        depth = 0;
+    }
+
+    private void replaceChild(int parent, int child, int replacement) {
+        if (parent == NIL) {
+            root = replacement;
+        } else if (leftOf(parent) == child) {
+            setLeft(parent, replacement);
+        } else {
+            setRight(parent, replacement);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+import java.util.function.Function;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.Iterator;
+
+// immutable AVL tree: add/put/remove never touch the current version, they copy the O(log n) nodes on the
+// path to the key and share everything else with it. Every version is a snapshot that can be handed to
+// other threads as is, no copy and no lock needed
+public class PersistentTreeMap<K extends Comparable<? super K>, V> implements Iterable<Entry<K, V>> {
+
+    private static class Node<_K, _V> {
+        final _K key;
+        final _V value;
+        final Node<_K, _V> left, right;
+        final int height;
+        final int size;
+
+        Node(_K key, _V value, Node<_K, _V> left, Node<_K, _V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            height = 1 + Math.max(getHeight(left), getHeight(right));
+            size = 1 + getSize(left) + getSize(right);
+        }
+
+        static int getHeight(Node<?, ?> root) {
+            return root == null ? -1 : root.height;
+        }
+
+        static int getSize(Node<?, ?> root) {
+            return root == null ? 0 : root.size;
+        }
+    }
+
+    private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null);
+
+    private final Node<K, V> root;
+
+    private PersistentTreeMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> empty() {
+        return (PersistentTreeMap<K, V>) EMPTY;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        PersistentTreeMap<Integer, String> v0 = PersistentTreeMap.empty();
+        var v1 = v0.add(1, "Hello").add(3, ", ").add(6, "World").add(7, "!");
+        var v2 = v1.remove(6).put(3, " ").add(5, "CyberWorld");
+
+        System.out.print("v0 => ");
+        v0.each(entry -> System.out.print(entry.getValue()));
+        System.out.print("\nv1 => ");
+        v1.each(entry -> System.out.print(entry.getValue()));
+        System.out.print("\nv2 => ");
+        v2.each(entry -> System.out.print(entry.getValue()));
+        System.out.println();
+        System.out.println("v1.get(6) => " + v1.get(6) + "\tv2.get(6) => " + v2.get(6));
+        System.out.println("v2 floor(4) => " + v2.floor(4).getKey() + "\tceiling(4) => " + v2.ceiling(4).getKey());
+        var lengths = v2.map(s -> s.length());
+        System.out.println("The sum of all str lengths in v2 is := " + lengths.reduce((entry, acc) -> acc + entry.getValue(), Integer.valueOf(0)));
+        System.out.println();
+
+        // one writer publishes new versions, readers grab the current one in O(1) and read it without locks
+        AtomicReference<PersistentTreeMap<Integer, Integer>> published = new AtomicReference<>(PersistentTreeMap.empty());
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 1e5; i++) {
+                published.set(published.get().add(i, i));
+            }
+        });
+        Thread reader = new Thread(() -> {
+            long checks = 0;
+            while (published.get().size() < 1e5) {
+                var snapshot = published.get();
+                int size = snapshot.size();
+                if (size > 0 && snapshot.last().getKey() != size - 1) {
+                    System.out.println("Inconsistent snapshot!");
+                }
+                checks++;
+            }
+            System.out.println("reader checked " + checks + " snapshots");
+        });
+        long start = System.nanoTime();
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        System.out.println("1e5 versions published in " + (System.nanoTime() - start) / 1e6 + "ms");
+    }
+
+    public int size() {
+        return Node.getSize(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    private Node<K, V> find(K key) {
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.key.compareTo(key);
+            if (compare > 0) {
+                iter = iter.left;
+            } else if (compare < 0) {
+                iter = iter.right;
+            } else {
+                return iter;
+            }
+        }
+        return null;
+    }
+
+    public boolean contains(K key) {
+        return find(key) != null;
+    }
+
+    public V get(K key) {
+        var node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    // new version with the key, this same version if the key is already there
+    public PersistentTreeMap<K, V> add(K key, V value) {
+        return withRoot(insert(root, key, value, false));
+    }
+
+    // new version where 'key' maps to 'value'
+    public PersistentTreeMap<K, V> put(K key, V value) {
+        return withRoot(insert(root, key, value, true));
+    }
+
+    // new version without the key, this same version if the key isn't there
+    public PersistentTreeMap<K, V> remove(K key) {
+        return withRoot(delete(root, key));
+    }
+
+    private PersistentTreeMap<K, V> withRoot(Node<K, V> newRoot) {
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentTreeMap<>(newRoot);
+    }
+
+    // builds the node (key, value, left, right), rotating it when the heights of the two sides differ by 2
+    private static <_K, _V> Node<_K, _V> balance(_K key, _V value, Node<_K, _V> left, Node<_K, _V> right) {
+        int skew = Node.getHeight(left) - Node.getHeight(right);
+        if (skew > 1) {
+            if (Node.getHeight(left.left) >= Node.getHeight(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            var pivot = left.right;
+            return new Node<>(pivot.key, pivot.value,
+                              new Node<>(left.key, left.value, left.left, pivot.left),
+                              new Node<>(key, value, pivot.right, right));
+        } else if (skew < -1) {
+            if (Node.getHeight(right.right) >= Node.getHeight(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            var pivot = right.left;
+            return new Node<>(pivot.key, pivot.value,
+                              new Node<>(key, value, left, pivot.left),
+                              new Node<>(right.key, right.value, pivot.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    // returns the same node when nothing changed, so the untouched versions are shared up to the root
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> insert(Node<_K, _V> root, _K key, _V value, boolean replace) {
+        if (root == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int compare = root.key.compareTo(key);
+        if (compare > 0) {
+            var left = insert(root.left, key, value, replace);
+            return left == root.left ? root : balance(root.key, root.value, left, root.right);
+        } else if (compare < 0) {
+            var right = insert(root.right, key, value, replace);
+            return right == root.right ? root : balance(root.key, root.value, root.left, right);
+        } else if (!replace || root.value == value) {
+            return root;
+        }
+        return new Node<>(key, value, root.left, root.right);
+    }
+
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> delete(Node<_K, _V> root, _K key) {
+        if (root == null) {
+            return null;
+        }
+        int compare = root.key.compareTo(key);
+        if (compare > 0) {
+            var left = delete(root.left, key);
+            return left == root.left ? root : balance(root.key, root.value, left, root.right);
+        } else if (compare < 0) {
+            var right = delete(root.right, key);
+            return right == root.right ? root : balance(root.key, root.value, root.left, right);
+        } else if (root.left == null) {
+            return root.right;
+        } else if (root.right == null) {
+            return root.left;
+        }
+        var min = root.right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.key, min.value, root.left, deleteMin(root.right));
+    }
+
+    private static <_K, _V> Node<_K, _V> deleteMin(Node<_K, _V> root) {
+        if (root.left == null) {
+            return root.right;
+        }
+        return balance(root.key, root.value, deleteMin(root.left), root.right);
+    }
+
+    public Entry<K, V> first() {
+        if (root == null) {
+            return null;
+        }
+        var iter = root;
+        while (iter.left != null) {
+            iter = iter.left;
+        }
+        return new Entry<>(iter.key, iter.value);
+    }
+
+    public Entry<K, V> last() {
+        if (root == null) {
+            return null;
+        }
+        var iter = root;
+        while (iter.right != null) {
+            iter = iter.right;
+        }
+        return new Entry<>(iter.key, iter.value);
+    }
+
+    // greatest key <= 'key'
+    public Entry<K, V> floor(K key) {
+        Node<K, V> best = null;
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.key.compareTo(key);
+            if (compare == 0) {
+                best = iter;
+                break;
+            } else if (compare < 0) {
+                best = iter;
+                iter = iter.right;
+            } else {
+                iter = iter.left;
+            }
+        }
+        return best == null ? null : new Entry<>(best.key, best.value);
+    }
+
+    // smallest key >= 'key'
+    public Entry<K, V> ceiling(K key) {
+        Node<K, V> best = null;
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.key.compareTo(key);
+            if (compare == 0) {
+                best = iter;
+                break;
+            } else if (compare > 0) {
+                best = iter;
+                iter = iter.left;
+            } else {
+                iter = iter.right;
+            }
+        }
+        return best == null ? null : new Entry<>(best.key, best.value);
+    }
+
+    // in order
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+
+        return new Iterator<Entry<K, V>>() {
+            Stack<Node<K, V>> stack = new Stack<Node<K, V>>();
+            Node<K, V> current = root;
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty() || current != null;
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                while (current != null) {
+                    stack.push(current);
+                    current = current.left;
+                }
+
+                current = stack.pop();
+                var nextEntry = new Entry<K, V>(current.key, current.value);
+
+                current = current.right;
+
+                return nextEntry;
+            }
+        };
+    }
+
+    // same shape, so the mapped version is built in O(n) without rebalancing
+    public <U> PersistentTreeMap<K, U> map(Function<? super V, ? extends U> f) {
+        return root == null ? empty() : new PersistentTreeMap<>(mapNode(root, f));
+    }
+
+    private static <_K, _V, _U> Node<_K, _U> mapNode(Node<_K, _V> node, Function<? super _V, ? extends _U> f) {
+        if (node == null) {
+            return null;
+        }
+        Node<_K, _U> left = mapNode(node.left, f);
+        _U value = f.apply(node.value);
+        Node<_K, _U> right = mapNode(node.right, f);
+        return new Node<>(node.key, value, left, right);
+    }
+
+    public PersistentTreeMap<K, V> filterByKeys(Predicate<? super K> p) {
+        PersistentTreeMap<K, V> filtered = this;
+        for (Entry<K, V> entry : this) {
+            if (!p.test(entry.getKey())) {
+                filtered = filtered.remove(entry.getKey());
+            }
+        }
+        return filtered;
+    }
+
+    public PersistentTreeMap<K, V> filterByValues(Predicate<? super V> p) {
+        PersistentTreeMap<K, V> filtered = this;
+        for (Entry<K, V> entry : this) {
+            if (!p.test(entry.getValue())) {
+                filtered = filtered.remove(entry.getKey());
+            }
+        }
+        return filtered;
+    }
+
+    public <U> U reduce(BiFunction<? super Entry<? extends K, ? extends V>, ? super U, ? extends U> reducer, U initial) {
+        for (Entry<K, V> entry : this) {
+            initial = reducer.apply(entry, initial);
+        }
+        return initial;
+    }
+
+    public void each(Consumer<? super Entry<? extends K, ? extends V>> consumer) {
+        for (Entry<K, V> entry : this) {
+            consumer.accept(entry);
+        }
+    }
+}
@@ -40,11 +40,9 @@ public class Queue<T> {
         var old = array;
         array = new Object[array.length << 1];
         indexPush = 0;
-        for(int i = 0; i < old.length; i++) {
-            int access = Math.floorMod(indexPop + i, old.length);
-            if (old[access] != null) {
-                array[indexPush++] = old[access];
-            }
+        // exactly 'len' slots from indexPop, a null there is an enqueued element, not a free slot
+        for(int i = 0; i < len; i++) {
+            array[indexPush++] = old[Math.floorMod(indexPop + i, old.length)];
         }
         indexPop = 0;
     }
@@ -54,11 +52,9 @@ public class Queue<T> {
         var old = array;
         array = new Object[array.length >> 1];
         indexPush = 0;
-        for(int i = 0; i < old.length; i++) {
-            int access = Math.floorMod(indexPop + i, old.length);
-            if (old[access] != null) {
-                array[indexPush++] = old[access];
-            }
+        // exactly 'len' slots from indexPop, a null there is an enqueued element, not a free slot
+        for(int i = 0; i < len; i++) {
+            array[indexPush++] = old[Math.floorMod(indexPop + i, old.length)];
         }
         indexPop = 0;
     }
@@ -67,6 +63,10 @@ public class Queue<T> {
        return len == 0;
     }
 
+    public int size() {
+        return len;
+    }
+
     public void enqueue(T elem){
         if (len == array.length) {
             growth();
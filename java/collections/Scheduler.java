@@ -0,0 +1,337 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// a fixed set of worker threads, each one owning a WorkStealingDeque of tasks. A task forked by a worker goes
+// to the bottom of its own deque, so related work stays on the same thread and its caches; a worker out of
+// work steals the oldest, usually biggest, task at the top of a random victim. Tasks from other threads go
+// through a ConcurrentRingBuffer every worker polls. A joining worker doesn't block: it runs its own tasks
+// and steals until the joined one is done. Idle workers yield for a while and then park until a submit or a
+// fork wakes one of them up
+public class Scheduler {
+    private static final int INBOUND_SIZE = 1 << 10;
+    private static final int IDLE_SPINS = 64;
+
+    // fork/join task: compute() forks the subtasks it can run in parallel and joins them
+    public abstract static class Task<R> {
+        private volatile boolean done;
+        private R result;
+        private Throwable failure;
+
+        protected abstract R compute();
+
+        // outside a worker it is the same as Scheduler.submit on the shared scheduler
+        public final Task<R> fork() {
+            var worker = Scheduler.currentWorker();
+            if (worker != null) {
+                worker.deque.push(this);
+                worker.scheduler().signalWork();
+            } else {
+                shared().submit(this);
+            }
+            return this;
+        }
+
+        // the result of compute(), what it threw is rethrown wrapped in a RuntimeException
+        public final R join() {
+            if (!done) {
+                var worker = Scheduler.currentWorker();
+                if (worker != null) {
+                    worker.helpUntilDone(this);
+                } else {
+                    synchronized (this) {
+                        while (!done) {
+                            try {
+                                wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new RuntimeException(e);
+                            }
+                        }
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+            }
+            return result;
+        }
+
+        public final boolean isDone() {
+            return done;
+        }
+
+        final void run() {
+            try {
+                result = compute();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            complete();
+        }
+
+        // for a task that will never run, join throws 'reason'
+        final void fail(Throwable reason) {
+            failure = reason;
+            complete();
+        }
+
+        private void complete() {
+            done = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private final class Worker extends Thread {
+        final WorkStealingDeque<Task<?>> deque = new WorkStealingDeque<>();
+        // set by the worker before it parks, cleared by whoever wakes it up
+        final AtomicBoolean idle = new AtomicBoolean();
+        final int index;
+        int seed;
+
+        Worker(int index) {
+            super("scheduler-worker-" + index);
+            this.index = index;
+            seed = index * 0x9E3779B9 + 1;
+            setDaemon(true);
+        }
+
+        Scheduler scheduler() {
+            return Scheduler.this;
+        }
+
+        // own tasks first, then the ones submitted from outside, then the other workers ones
+        Task<?> next() {
+            Task<?> task = deque.pop();
+            if (task == null) {
+                task = inbound.poll();
+            }
+            if (task == null) {
+                task = steal();
+            }
+            return task;
+        }
+
+        Task<?> steal() {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            int start = Math.floorMod(seed, workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                var victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    Task<?> task = victim.deque.steal();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        void helpUntilDone(Task<?> joined) {
+            while (!joined.isDone()) {
+                Task<?> task = next();
+                if (task != null) {
+                    task.run();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+
+        // marked idle before looking for work one last time: a task pushed after that finds the mark in
+        // signalWork, one pushed before is found here
+        Task<?> await() {
+            idle.set(true);
+            idleWorkers.incrementAndGet();
+            Task<?> task = next();
+            while (task == null && idle.get() && running) {
+                LockSupport.park(this);
+            }
+            idle.set(false);
+            idleWorkers.decrementAndGet();
+            return task;
+        }
+
+        @Override
+        public void run() {
+            int spins = 0;
+            while (running) {
+                Task<?> task = next();
+                if (task == null && ++spins >= IDLE_SPINS) {
+                    spins = 0;
+                    task = await();
+                }
+                if (task != null) {
+                    spins = 0;
+                    task.run();
+                } else {
+                    Thread.yield();
+                }
+            }
+            Task<?> task;
+            while ((task = deque.pop()) != null) {
+                task.fail(shutDown());
+            }
+            failInbound();
+        }
+    }
+
+    private static class Shared {
+        static final Scheduler INSTANCE = new Scheduler(Runtime.getRuntime().availableProcessors());
+    }
+
+    private final Worker[] workers;
+    private final ConcurrentRingBuffer<Task<?>> inbound = new ConcurrentRingBuffer<>(INBOUND_SIZE);
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public Scheduler(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+        }
+        workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (var worker : workers) {
+            worker.start();
+        }
+    }
+
+    // as many workers as processors, created on first use and never shut down: the idle ones are parked
+    public static Scheduler shared() {
+        return Shared.INSTANCE;
+    }
+
+    public static void main(String[] args) {
+        Scheduler scheduler = new Scheduler(args.length > 0 ? Integer.parseInt(args[0]) : 4);
+        System.out.println("fib(25) => " + scheduler.invoke(new Fibonacci(25)) + " on " + scheduler.parallelism() + " workers");
+
+        ArrayList<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            numbers.add(i);
+        }
+        var squares = numbers.parallelMap(n -> n * n, scheduler);
+        System.out.print("parallelMap squares =>");
+        squares.each(n -> System.out.print(" " + n));
+        System.out.println();
+        System.out.println("parallelReduce sum of squares => " + squares.parallelReduce((n, acc) -> acc + n, 0, Integer::sum, scheduler));
+        scheduler.shutdown();
+        System.out.println();
+
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        ArrayList<Double> values = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            values.add((double) i);
+        }
+        System.out.println("map and reduce of " + n + " elements on " + shared().parallelism() + " workers, 3 rounds");
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            double sequential = values.map(d -> Math.sqrt(d) * Math.sin(d)).reduce((d, acc) -> acc + d, 0.0);
+            long sequentialTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            double parallel = values.parallelMap(d -> Math.sqrt(d) * Math.sin(d)).parallelReduce((d, acc) -> acc + d, 0.0, Double::sum);
+            long parallelTime = System.nanoTime() - start;
+            System.out.println("map/reduce => " + sequentialTime / 1e6 + "ms\tparallelMap/parallelReduce => " + parallelTime / 1e6
+                + "ms\tsame sum => " + (Math.abs(sequential - parallel) < 1e-6 * Math.abs(sequential)));
+        }
+    }
+
+    private static class Fibonacci extends Task<Integer> {
+        final int n;
+
+        Fibonacci(int n) {
+            this.n = n;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (n < 12) {
+                return sequential(n);
+            }
+            var right = new Fibonacci(n - 2).fork();
+            return new Fibonacci(n - 1).compute() + right.join();
+        }
+
+        static int sequential(int n) {
+            return n < 2 ? n : sequential(n - 1) + sequential(n - 2);
+        }
+    }
+
+    private static Worker currentWorker() {
+        var thread = Thread.currentThread();
+        return thread instanceof Scheduler.Worker ? (Worker) thread : null;
+    }
+
+    public int parallelism() {
+        return workers.length;
+    }
+
+    // runs 'task' on a worker, it can then fork and join
+    public <R> Task<R> submit(Task<R> task) {
+        if (!running) {
+            throw shutDown();
+        }
+        var worker = currentWorker();
+        if (worker != null && worker.scheduler() == this) {
+            worker.deque.push(task);
+        } else {
+            while (!inbound.offer(task)) {
+                Thread.yield();
+            }
+        }
+        if (running) {
+            signalWork();
+        } else {
+            // shut down while offering, the workers may have failed the inbound tasks already
+            failInbound();
+        }
+        return task;
+    }
+
+    // wakes up one parked worker, if any, for a task just pushed
+    private void signalWork() {
+        if (idleWorkers.get() == 0) {
+            return;
+        }
+        for (var worker : workers) {
+            if (worker.idle.compareAndSet(true, false)) {
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+    }
+
+    private void failInbound() {
+        Task<?> task;
+        while ((task = inbound.poll()) != null) {
+            task.fail(shutDown());
+        }
+    }
+
+    private static IllegalStateException shutDown() {
+        return new IllegalStateException("the scheduler was shut down");
+    }
+
+    public <R> R invoke(Task<R> task) {
+        var worker = currentWorker();
+        if (worker != null && worker.scheduler() == this) {
+            task.run();
+            return task.join();
+        }
+        return submit(task).join();
+    }
+
+    // the workers stop after their current task, the tasks still queued are never run: their join throws an
+    // IllegalStateException
+    public void shutdown() {
+        running = false;
+        for (var worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+}
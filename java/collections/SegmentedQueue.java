@@ -0,0 +1,139 @@
+// the same FIFO of Queue.java on a linked chain of fixed size chunks: enqueue fills the tail chunk and
+// links a new one when it is full, dequeue empties the head chunk and unlinks it. Nothing is ever copied,
+// so both are O(1) worst case. Drained chunks go to a small pool the next tail chunks are taken from,
+// the ones that don't fit are left to the GC: a draining queue gives its memory back a chunk at a time
+public class SegmentedQueue<T> {
+    private static final int CHUNK_SIZE = 1 << 10;
+    private static final int POOL_SIZE = 4;
+
+    private static class Chunk {
+        final Object[] items = new Object[CHUNK_SIZE];
+        Chunk next;
+    }
+
+    private Chunk head = new Chunk();
+    private Chunk tail = head;
+    private int indexPop = 0; // into head
+    private int indexPush = 0; // into tail
+    private int len = 0;
+    private final Chunk[] pool = new Chunk[POOL_SIZE];
+    private int pooled = 0;
+
+    public SegmentedQueue(){}
+
+    public SegmentedQueue(T el){
+        enqueue(el);
+    }
+
+    public static void main(String[] args) {
+        SegmentedQueue<Integer> q = new SegmentedQueue<>();
+        q.enqueue(1);
+        q.enqueue(2);
+        q.enqueue(null);
+        q.enqueue(4);
+
+        System.out.println("Try 'peek' => " + q.peek());
+        while(!q.isEmpty()) {
+            System.out.println("Dequed => " + q.dequeue());
+        }
+        System.out.println("is empty => " + q.isEmpty());
+        for(int i = 0; i < 3 * CHUNK_SIZE; i++) {
+            q.enqueue(i);
+        }
+        long sum = 0;
+        while(!q.isEmpty()) {
+            sum += q.dequeue();
+        }
+        System.out.println("sum after 3 chunks => " + sum + "\tis empty => " + q.isEmpty());
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Integer[] boxed = new Integer[1000];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        System.out.println("Burst of " + n + " enqueues followed by a full drain, 3 rounds");
+        for (int round = 0; round < 3; round++) {
+            Queue<Integer> queue = new Queue<>();
+            long start = System.nanoTime();
+            long slowest = 0;
+            for (int i = 0; i < n; i++) {
+                long before = System.nanoTime();
+                queue.enqueue(boxed[i % boxed.length]);
+                slowest = Math.max(slowest, System.nanoTime() - before);
+            }
+            while (!queue.isEmpty()) {
+                queue.dequeue();
+            }
+            System.out.println("Queue => " + (System.nanoTime() - start) / 1e6 + "ms, slowest enqueue => " + slowest / 1e6 + "ms");
+
+            SegmentedQueue<Integer> segmented = new SegmentedQueue<>();
+            start = System.nanoTime();
+            slowest = 0;
+            for (int i = 0; i < n; i++) {
+                long before = System.nanoTime();
+                segmented.enqueue(boxed[i % boxed.length]);
+                slowest = Math.max(slowest, System.nanoTime() - before);
+            }
+            while (!segmented.isEmpty()) {
+                segmented.dequeue();
+            }
+            System.out.println("SegmentedQueue => " + (System.nanoTime() - start) / 1e6 + "ms, slowest enqueue => " + slowest / 1e6 + "ms");
+        }
+    }
+
+    public boolean isEmpty() {
+        return len == 0;
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public void enqueue(T elem) {
+        if (indexPush == CHUNK_SIZE) {
+            Chunk chunk;
+            if (pooled > 0) {
+                chunk = pool[--pooled];
+                pool[pooled] = null;
+            } else {
+                chunk = new Chunk();
+            }
+            tail.next = chunk;
+            tail = chunk;
+            indexPush = 0;
+        }
+        tail.items[indexPush++] = elem;
+        len++;
+    }
+
+    // null when the queue is empty, like Queue
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        return len == 0 ? null : (T) head.items[indexPop];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T dequeue() {
+        if (len == 0) {
+            return null;
+        }
+        T el = (T) head.items[indexPop];
+        head.items[indexPop++] = null;
+        len--;
+        if (len == 0) {
+            // a single chunk left, restart it from the beginning instead of chaining a new one
+            indexPop = 0;
+            indexPush = 0;
+        } else if (indexPop == CHUNK_SIZE) {
+            var drained = head;
+            head = head.next;
+            drained.next = null;
+            if (pooled < POOL_SIZE) {
+                pool[pooled++] = drained;
+            }
+            indexPop = 0;
+        }
+        return el;
+    }
+}
@@ -0,0 +1,384 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// a FIFO that keeps up to 'threshold' elements in memory and spills the rest, through a Codec, to append only
+// memory mapped segment files in 'directory'. While anything is on disk new elements are spilled too, so the
+// disk always holds the youngest ones and the order holds across the boundary. Dequeue decodes straight from
+// the mapping and a segment file is deleted as soon as it has been read to the end.
+// A segment starts with the offset of its next unread record, every record is the payload length plus one
+// followed by the payload: the length is written last, an unwritten zero reads as the end of the segment.
+// The segments are named by id and read in id order, so the queue picks up where it was after a restart
+public class SpillingQueue<T> implements Closeable {
+    private static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+    // the JDK unmaps a deleted segment only when its buffer is collected, smaller segments would pile up
+    // mappings faster than the GC drops them and run out of native memory
+    private static final int MIN_SEGMENT_SIZE = 1 << 20;
+    private static final int HEADER = Integer.BYTES;
+    private static final String SUFFIX = ".seg";
+    // close() puts the in memory elements in segments before the first one, the ids start high to leave room
+    private static final long FIRST_ID = 1L << 48;
+
+    // 'decode' gets a read only view of the mapping, it is valid only until decode returns
+    public interface Codec<T> {
+        ByteBuffer encode(T el);
+
+        T decode(ByteBuffer bytes);
+    }
+
+    public static final Codec<String> UTF8 = new Codec<String>() {
+        @Override
+        public ByteBuffer encode(String el) {
+            return ByteBuffer.wrap(el.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String decode(ByteBuffer bytes) {
+            return StandardCharsets.UTF_8.decode(bytes).toString();
+        }
+    };
+
+    public static final Codec<Integer> INTS = new Codec<Integer>() {
+        @Override
+        public ByteBuffer encode(Integer el) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(0, el);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer bytes) {
+            return bytes.getInt(0);
+        }
+    };
+
+    private static class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int readOffset;
+        int writeOffset;
+        int records; // written and not read yet
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final Codec<T> codec;
+    private final int threshold;
+    private final int segmentSize;
+    private final SegmentedQueue<T> memory = new SegmentedQueue<>();
+    private final Queue<Segment> segments = new Queue<>(); // oldest first, the last one is 'writing'
+    private Segment writing;
+    private long spilled; // elements on disk
+    private long nextId = FIRST_ID;
+
+    public SpillingQueue(Path directory, Codec<T> codec, int threshold) throws IOException {
+        this(directory, codec, threshold, DEFAULT_SEGMENT_SIZE);
+    }
+
+    // recovers the segments already in 'directory', their elements come out before the new ones
+    public SpillingQueue(Path directory, Codec<T> codec, int threshold, int segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segments must be at least " + MIN_SEGMENT_SIZE + " bytes, got " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.codec = codec;
+        this.threshold = threshold;
+        this.segmentSize = segmentSize;
+        recover();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("spilling-queue");
+        SpillingQueue<String> q = new SpillingQueue<>(directory, UTF8, 3, MIN_SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            q.enqueue("element " + i);
+        }
+        System.out.println("size => " + q.size() + "\ton disk => " + q.spilled + "\tsegment files => " + q.segmentFiles());
+        for (int i = 0; i < 4; i++) {
+            System.out.println("Dequed => " + q.dequeue());
+        }
+        q.close();
+
+        SpillingQueue<String> restarted = new SpillingQueue<>(directory, UTF8, 3, MIN_SEGMENT_SIZE);
+        System.out.println("after a restart size => " + restarted.size() + "\tpeek => " + restarted.peek());
+        restarted.enqueue("element 10");
+        while (!restarted.isEmpty()) {
+            System.out.println("Dequed => " + restarted.dequeue());
+        }
+        System.out.println("is empty => " + restarted.isEmpty() + "\tsegment files => " + restarted.segmentFiles());
+        restarted.close();
+        System.out.println();
+
+        // the consumer falls behind by 'n' elements: the heap only holds 'threshold' of them
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int threshold = 100_000;
+        SpillingQueue<Integer> backlog = new SpillingQueue<>(directory, INTS, threshold, 1 << 24);
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            backlog.enqueue(i);
+        }
+        System.out.println(n + " enqueues with threshold " + threshold + " took " + (System.nanoTime() - start) / 1e6 + "ms, on disk => "
+            + backlog.spilled + "\tsegment files => " + backlog.segmentFiles());
+        start = System.nanoTime();
+        long sum = 0;
+        boolean ordered = true;
+        for (int i = 0; i < n; i++) {
+            int el = backlog.dequeue();
+            ordered &= el == i;
+            sum += el;
+        }
+        System.out.println(n + " dequeues took " + (System.nanoTime() - start) / 1e6 + "ms, in order => " + ordered + "\tsum => " + sum
+            + "\tsegment files => " + backlog.segmentFiles());
+        backlog.close();
+        Files.delete(directory);
+    }
+
+    private Path pathOf(long id) {
+        return directory.resolve(String.format("%016x", id) + SUFFIX);
+    }
+
+    private long segmentFiles() {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(SUFFIX)).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, int size, boolean create) throws IOException {
+        var options = create
+            ? new StandardOpenOption[] { StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE }
+            : new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+        try (var channel = FileChannel.open(path, options)) {
+            // the mapping outlives the channel
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, create ? size : channel.size());
+        }
+    }
+
+    private void recover() throws IOException {
+        // sorted by id
+        TreeMap<Long, Path> found = new TreeMap<>();
+        try (var files = Files.list(directory)) {
+            for (var path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    found.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length()), 16), path);
+                }
+            }
+        }
+        for (var entry : found) {
+            long id = entry.getKey();
+            var segment = new Segment(id, entry.getValue(), map(entry.getValue(), 0, false));
+            // a segment can be left with a zero header if the process died right after creating it
+            segment.readOffset = Math.max(segment.buffer.getInt(0), HEADER);
+            segment.writeOffset = segment.readOffset;
+            // the records left, up to the first unwritten length
+            while (segment.writeOffset + Integer.BYTES <= segment.buffer.capacity()) {
+                int length = segment.buffer.getInt(segment.writeOffset) - 1;
+                if (length < 0) {
+                    break;
+                }
+                segment.writeOffset += Integer.BYTES + length;
+                segment.records++;
+            }
+            nextId = id + 1;
+            if (segment.records == 0) {
+                Files.delete(segment.path);
+                continue;
+            }
+            segments.enqueue(segment);
+            spilled += segment.records;
+            writing = segment;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long size() {
+        return memory.size() + spilled;
+    }
+
+    public void enqueue(T elem) {
+        if (spilled == 0 && memory.size() < threshold) {
+            memory.enqueue(elem);
+        } else {
+            spill(codec.encode(elem));
+        }
+    }
+
+    private void spill(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        if (writing == null || !fits(writing.writeOffset, writing.buffer.capacity(), length)) {
+            writing = newSegment(nextId++, length);
+            segments.enqueue(writing);
+        }
+        append(writing, bytes);
+        spilled++;
+    }
+
+    private static boolean fits(long offset, long capacity, int length) {
+        return offset + Integer.BYTES + length <= capacity;
+    }
+
+    // the payload first and its length last, a reader never sees a length before its bytes
+    private static void append(Segment segment, ByteBuffer bytes) {
+        int length = bytes.remaining();
+        segment.buffer.put(segment.writeOffset + Integer.BYTES, bytes, bytes.position(), length);
+        segment.buffer.putInt(segment.writeOffset, length + 1);
+        segment.writeOffset += Integer.BYTES + length;
+        segment.records++;
+    }
+
+    private long capacityFor(int length) {
+        return Math.max(segmentSize, (long) HEADER + Integer.BYTES + length);
+    }
+
+    // big enough for at least one record of 'length' bytes
+    private Segment newSegment(long id, int length) {
+        long size = capacityFor(length);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a record of " + length + " bytes doesn't fit in a segment");
+        }
+        try {
+            var segment = new Segment(id, pathOf(id), map(pathOf(id), (int) size, true));
+            segment.buffer.putInt(0, HEADER);
+            segment.readOffset = HEADER;
+            segment.writeOffset = HEADER;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null when the queue is empty, like Queue
+    public T peek() {
+        if (!memory.isEmpty()) {
+            return memory.peek();
+        }
+        if (spilled == 0) {
+            return null;
+        }
+        var segment = segments.peek();
+        return codec.decode(record(segment));
+    }
+
+    public T dequeue() {
+        if (!memory.isEmpty()) {
+            return memory.dequeue();
+        }
+        if (spilled == 0) {
+            return null;
+        }
+        var segment = segments.peek();
+        var bytes = record(segment);
+        T el = codec.decode(bytes);
+        segment.readOffset += Integer.BYTES + bytes.capacity();
+        segment.buffer.putInt(0, segment.readOffset);
+        segment.records--;
+        spilled--;
+        if (segment.records == 0) {
+            release(segments.dequeue());
+        }
+        return el;
+    }
+
+    private ByteBuffer record(Segment segment) {
+        int length = segment.buffer.getInt(segment.readOffset) - 1;
+        return segment.buffer.slice(segment.readOffset + Integer.BYTES, length).asReadOnlyBuffer();
+    }
+
+    private void release(Segment segment) {
+        if (segment == writing) {
+            writing = null;
+        }
+        try {
+            Files.delete(segment.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the in memory elements go to segments before the spilled ones and everything is flushed to the files,
+    // a new SpillingQueue on the same directory continues from here. The queue can't be used afterwards
+    @Override
+    public void close() throws IOException {
+        if (!memory.isEmpty()) {
+            persistMemory();
+        }
+        while (!segments.isEmpty()) {
+            segments.dequeue().buffer.force();
+        }
+        writing = null;
+        spilled = 0;
+    }
+
+    // the in memory elements, oldest first, in segments numbered down from the first one on disk. They are
+    // all encoded before a file is made: if the codec or a file fails, the segments written so far are
+    // deleted and the elements go back to memory
+    private void persistMemory() {
+        ArrayList<T> elements = new ArrayList<>();
+        while (!memory.isEmpty()) {
+            elements.add(memory.dequeue());
+        }
+        ArrayList<Segment> written = new ArrayList<>();
+        try {
+            ArrayList<ByteBuffer> encoded = new ArrayList<>();
+            for (var el : elements) {
+                encoded.add(codec.encode(el));
+            }
+            // the segments needed, by the same rule spill uses to open a new one
+            int count = 0;
+            long offset = 0, capacity = 0;
+            for (var bytes : encoded) {
+                int length = bytes.remaining();
+                if (count == 0 || !fits(offset, capacity, length)) {
+                    count++;
+                    capacity = capacityFor(length);
+                    offset = HEADER;
+                }
+                offset += Integer.BYTES + length;
+            }
+            long id = segments.isEmpty() ? nextId : segments.peek().id - count;
+            Segment segment = null;
+            for (var bytes : encoded) {
+                int length = bytes.remaining();
+                if (segment == null || !fits(segment.writeOffset, segment.buffer.capacity(), length)) {
+                    segment = newSegment(id++, length);
+                    written.add(segment);
+                }
+                append(segment, bytes);
+            }
+            for (var done : written) {
+                done.buffer.force();
+            }
+            if (segments.isEmpty()) {
+                nextId = id;
+            }
+        } catch (RuntimeException e) {
+            for (var segment : written) {
+                try {
+                    Files.deleteIfExists(segment.path);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            for (var el : elements) {
+                memory.enqueue(el);
+            }
+            throw e;
+        }
+    }
+}
@@ -17,6 +17,7 @@ public class Stack<T> {
         for(int i = 0; i < index; i++) {
             array[i] = old[i];
         }
+        cap = array.length;
     }
 
     @SuppressWarnings("unchecked")
@@ -26,6 +27,7 @@ public class Stack<T> {
         for(int i = 0; i < index; i++) {
             array[i] = old[i];
         }
+        cap = array.length;
     }
 
     public void push(T el) {
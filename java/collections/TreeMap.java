@@ -2,12 +2,16 @@ import java.util.function.Function;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
 import java.util.function.Consumer;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 
 public class TreeMap<K extends Comparable<? super K>, V> implements Iterable<Entry<K, V>> {
 
     private Node<K, V> root = null;
     private int len = 0;
+    // links and unlinks so far, a function that changed it under computeIfAbsent, compute or merge invalidated
+    // the node they found before calling it
+    private int modCount = 0;
 
     public static void main(String[] args) {
         TreeMap<Integer, String> tree = new TreeMap<>();
@@ -79,13 +83,129 @@ public class TreeMap<K extends Comparable<? super K>, V> implements Iterable<Ent
         System.out.println("Post remove root");
         copy.remove(1);
         copy.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := " + entry.getValue()));
+
+        System.out.println("Trying the navigation methods");
+        System.out.println("first => " + tree.first().getKey() + "\tlast => " + tree.last().getKey());
+        System.out.println("floor(5) => " + tree.floor(5).getKey() + "\tceiling(5) => " + tree.ceiling(5).getKey());
+        System.out.println("lower(6) => " + tree.lower(6).getKey() + "\thigher(6) => " + tree.higher(6).getKey());
+        System.out.println("subMap(2, 7)");
+        for (var entry : tree.subMap(2, 7)) {
+            System.out.println("Key := " + entry.getKey() + "\tValue := '" + entry.getValue() + "'");
+        }
+        System.out.println("headMap(6)");
+        for (var entry : tree.headMap(6)) {
+            System.out.println("Key := " + entry.getKey() + "\tValue := '" + entry.getValue() + "'");
+        }
+        System.out.println("tailMap(6)");
+        for (var entry : tree.tailMap(6)) {
+            System.out.println("Key := " + entry.getKey() + "\tValue := '" + entry.getValue() + "'");
+        }
+        System.out.println();
+
+        System.out.println("Trying 'put', 'merge' and 'compute'");
+        TreeMap<String, Integer> counter = new TreeMap<>();
+        for (var word : "the cat and the dog and the bird".split(" ")) {
+            counter.merge(word, 1, (a, b) -> a + b);
+        }
+        System.out.println("put(\"cat\", 10) => " + counter.put("cat", 10) + "\tget(\"cat\") => " + counter.get("cat"));
+        counter.compute("dog", (k, v) -> null);
+        counter.each(entry -> System.out.println("Key := " + entry.getKey() + "\tValue := " + entry.getValue()));
+        System.out.println();
+
+        System.out.println("Trying the order statistics");
+        System.out.println("select(2) => " + tree.select(2).getKey() + "\trank(6) => " + tree.rank(6) + "\tcountInRange(2, 7) => " + tree.countInRange(2, 7));
+        TreeMap<Double, Integer> latencies = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            latencies.add(Math.sqrt(i) * 3.0, i);
+        }
+        for (double percentile : new double[] {0.5, 0.9, 0.99}) {
+            int index = (int) Math.ceil(percentile * latencies.size()) - 1;
+            System.out.println("p" + (int) (percentile * 100) + " => " + latencies.select(index).getKey());
+        }
+        System.out.println();
+
+        System.out.println("Trying sequential keys, they used to degenerate the tree into a list");
+        TreeMap<Integer, Integer> sequential = new TreeMap<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1e5; i++) {
+            sequential.add(i, i);
+        }
+        System.out.println("1e5 sequential adds took " + (System.nanoTime() - start) / 1e6 + "ms");
+        System.out.println("Props Holds? => " + (assertRedBlackProperties(sequential.root) >= 0));
+        for (int i = 0; i < 1e5; i += 2) {
+            sequential.remove(i);
+        }
+        System.out.println("Props Holds after removing half? => " + (assertRedBlackProperties(sequential.root) >= 0) + "\tsize => " + sequential.size());
+
+        System.out.println("Trying the set operations on two 1e6 keys maps");
+        TreeMap<Integer, Integer> evens = new TreeMap<>(), thirds = new TreeMap<>();
+        for (int i = 0; i < 1e6; i++) {
+            evens.add(2 * i, i);
+            thirds.add(3 * i, i);
+        }
+        start = System.nanoTime();
+        var joined = evens.union(thirds);
+        var common = evens.intersect(thirds);
+        var onlyEvens = evens.difference(thirds);
+        var onlyOne = evens.symmetricalDifference(thirds);
+        System.out.println("union, intersect, difference and symmetricalDifference took " + (System.nanoTime() - start) / 1e6 + "ms");
+        System.out.println("sizes => " + joined.size() + " " + common.size() + " " + onlyEvens.size() + " " + onlyOne.size());
+        System.out.println("Props Holds? => " + (assertRedBlackProperties(joined.root) >= 0 && assertRedBlackProperties(common.root) >= 0
+                                                 && assertRedBlackProperties(onlyEvens.root) >= 0 && assertRedBlackProperties(onlyOne.root) >= 0));
+
+        System.out.println("Trying 'map' and the filters on 1e6 keys");
+        start = System.nanoTime();
+        var halves = evens.map(i -> i / 2);
+        var small = evens.filterByKeys(k -> k < 1000);
+        var odds = evens.filterByValues(v -> (v & 1) == 1);
+        System.out.println("map, filterByKeys and filterByValues took " + (System.nanoTime() - start) / 1e6 + "ms");
+        System.out.println("sizes => " + halves.size() + " " + small.size() + " " + odds.size());
+        System.out.println("Props Holds? => " + (assertRedBlackProperties(halves.root) >= 0 && assertRedBlackProperties(small.root) >= 0
+                                                 && assertRedBlackProperties(odds.root) >= 0));
     }
 
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
     private static class Node<_K extends Comparable<? super _K>, _V> {
         Entry<_K, _V> entry;
-        Node<_K, _V> left, right;
-        public Node(_K key, _V value) {
+        Node<_K, _V> left, right, parent;
+        boolean color = RED;
+        int size = 1; // nodes in the subtree rooted here
+        public Node(_K key, _V value, Node<_K, _V> parent) {
             entry = new Entry<>(key, value);
+            this.parent = parent;
+        }
+
+        static int sizeOf(Node<?, ?> node) {
+            return node == null ? 0 : node.size;
+        }
+
+        void updateSize() {
+            size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        // null leaves are black
+        static boolean colorOf(Node<?, ?> node) {
+            return node == null ? BLACK : node.color;
+        }
+
+        static void setColor(Node<?, ?> node, boolean color) {
+            if (node != null) {
+                node.color = color;
+            }
+        }
+
+        static <_K extends Comparable<? super _K>, _V> Node<_K, _V> parentOf(Node<_K, _V> node) {
+            return node == null ? null : node.parent;
+        }
+
+        static <_K extends Comparable<? super _K>, _V> Node<_K, _V> leftOf(Node<_K, _V> node) {
+            return node == null ? null : node.left;
+        }
+
+        static <_K extends Comparable<? super _K>, _V> Node<_K, _V> rightOf(Node<_K, _V> node) {
+            return node == null ? null : node.right;
         }
     }
 
@@ -229,170 +349,677 @@ public class TreeMap<K extends Comparable<? super K>, V> implements Iterable<Ent
     }
 
     public boolean add(K key, V value) {
-        if (root == null) {
-            root = new Node<K, V>(key, value);
-            len++;
-            return true;
+        var node = findOrParent(key);
+        if (node != null && node.entry.getKey().compareTo(key) == 0) {
+            return false;
         }
+        linkUnder(node, key, value);
+        return true;
+    }
+
+    // returns the previous value, null if the key was missing
+    public V put(K key, V value) {
+        var node = findOrParent(key);
+        if (node != null && node.entry.getKey().compareTo(key) == 0) {
+            V old = node.entry.getValue();
+            node.entry.setValue(value);
+            return old;
+        }
+        linkUnder(node, key, value);
+        return null;
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> f) {
+        var node = findOrParent(key);
+        if (node != null && node.entry.getKey().compareTo(key) == 0) {
+            return node.entry.getValue();
+        }
+        int expected = modCount;
+        V value = f.apply(key);
+        checkModCount(expected);
+        if (value != null) {
+            linkUnder(node, key, value);
+        }
+        return value;
+    }
 
+    // 'f' gets null when the key is missing, a null result removes the key
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> f) {
+        var node = findOrParent(key);
+        int expected = modCount;
+        if (node != null && node.entry.getKey().compareTo(key) == 0) {
+            V value = f.apply(key, node.entry.getValue());
+            checkModCount(expected);
+            if (value == null) {
+                len--;
+                deleteNode(node);
+            } else {
+                node.entry.setValue(value);
+            }
+            return value;
+        }
+        V value = f.apply(key, null);
+        checkModCount(expected);
+        if (value != null) {
+            linkUnder(node, key, value);
+        }
+        return value;
+    }
+
+    // a null result from the remapping function removes the key
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> f) {
+        var node = findOrParent(key);
+        if (node != null && node.entry.getKey().compareTo(key) == 0) {
+            int expected = modCount;
+            V merged = f.apply(node.entry.getValue(), value);
+            checkModCount(expected);
+            if (merged == null) {
+                len--;
+                deleteNode(node);
+            } else {
+                node.entry.setValue(merged);
+            }
+            return merged;
+        }
+        linkUnder(node, key, value);
+        return value;
+    }
+
+    // the node holding 'key' or, when it is missing, the one 'key' has to be linked under.
+    // Null only on an empty tree
+    private Node<K, V> findOrParent(K key) {
         var iter = root;
-        while(true) {
+        while (iter != null) {
             int compare = iter.entry.getKey().compareTo(key);
-            if (compare > 0) {
-                if (iter.left == null) {
-                    len++;
-                    iter.left = new Node<>(key, value);
-                    return true;
+            var next = compare > 0 ? iter.left : compare < 0 ? iter.right : iter;
+            if (next == null || next == iter) {
+                return iter;
+            }
+            iter = next;
+        }
+        return null;
+    }
+
+    private void checkModCount(int expected) {
+        if (modCount != expected) {
+            throw new ConcurrentModificationException("the function added or removed keys of this map");
+        }
+    }
+
+    private void linkUnder(Node<K, V> parent, K key, V value) {
+        len++;
+        modCount++;
+        if (parent == null) {
+            root = new Node<K, V>(key, value, null);
+            root.color = BLACK;
+            return;
+        }
+        var node = new Node<>(key, value, parent);
+        if (parent.entry.getKey().compareTo(key) > 0) {
+            parent.left = node;
+        } else {
+            parent.right = node;
+        }
+        growPath(parent);
+        fixAfterInsertion(node);
+    }
+
+    private static void growPath(Node<?, ?> node) {
+        for (; node != null; node = node.parent) {
+            node.size++;
+        }
+    }
+
+    private static void shrinkPath(Node<?, ?> node) {
+        for (; node != null; node = node.parent) {
+            node.size--;
+        }
+    }
+
+    private void rotateLeft(Node<K, V> node) {
+        Node<K, V> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = node;
+        }
+        pivot.parent = node.parent;
+        if (node.parent == null) {
+            root = pivot;
+        } else if (node.parent.left == node) {
+            node.parent.left = pivot;
+        } else {
+            node.parent.right = pivot;
+        }
+        pivot.left = node;
+        node.parent = pivot;
+        pivot.size = node.size;
+        node.updateSize();
+    }
+
+    private void rotateRight(Node<K, V> node) {
+        Node<K, V> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = node;
+        }
+        pivot.parent = node.parent;
+        if (node.parent == null) {
+            root = pivot;
+        } else if (node.parent.right == node) {
+            node.parent.right = pivot;
+        } else {
+            node.parent.left = pivot;
+        }
+        pivot.right = node;
+        node.parent = pivot;
+        pivot.size = node.size;
+        node.updateSize();
+    }
+
+    // CLRS insert fixup, 'node' is the red node just linked in
+    private void fixAfterInsertion(Node<K, V> node) {
+        while (node != root && Node.colorOf(node.parent) == RED) {
+            var parent = Node.parentOf(node);
+            var grandParent = Node.parentOf(parent);
+            if (parent == Node.leftOf(grandParent)) {
+                var uncle = Node.rightOf(grandParent);
+                if (Node.colorOf(uncle) == RED) {
+                    Node.setColor(parent, BLACK);
+                    Node.setColor(uncle, BLACK);
+                    Node.setColor(grandParent, RED);
+                    node = grandParent;
                 } else {
-                    iter = iter.left;
+                    if (node == Node.rightOf(parent)) {
+                        node = parent;
+                        rotateLeft(node);
+                    }
+                    Node.setColor(Node.parentOf(node), BLACK);
+                    Node.setColor(Node.parentOf(Node.parentOf(node)), RED);
+                    rotateRight(Node.parentOf(Node.parentOf(node)));
                 }
-            } else if (compare < 0) {
-                if (iter.right == null) {
-                    len++;
-                    iter.right = new Node<>(key, value);
-                    return true;
+            } else {
+                var uncle = Node.leftOf(grandParent);
+                if (Node.colorOf(uncle) == RED) {
+                    Node.setColor(parent, BLACK);
+                    Node.setColor(uncle, BLACK);
+                    Node.setColor(grandParent, RED);
+                    node = grandParent;
                 } else {
-                    iter = iter.right;
+                    if (node == Node.leftOf(parent)) {
+                        node = parent;
+                        rotateRight(node);
+                    }
+                    Node.setColor(Node.parentOf(node), BLACK);
+                    Node.setColor(Node.parentOf(Node.parentOf(node)), RED);
+                    rotateLeft(Node.parentOf(Node.parentOf(node)));
                 }
-            } else {
-                return false;
             }
         }
+        root.color = BLACK;
     }
 
-    public boolean remove(K key) {
-        if(root == null) {
-            return false;
-        }
-
-        boolean isRemoved = false;
-        Node<K, V> iter = root, parent = null;
+    private Node<K, V> find(K key) {
+        var iter = root;
         while(iter != null) {
             int compare = iter.entry.getKey().compareTo(key);
             if (compare > 0) {
-                parent = iter;
                 iter = iter.left;
             } else if (compare < 0) {
-                parent = iter;
                 iter = iter.right;
             } else {
-                break;
+                return iter;
             }
         }
+        return null;
+    }
 
-        if (iter != null) {
-            len--;
-            isRemoved = true;
-            if (parent == null) {
-                root = deleteRoot(root);
-            } else if (iter == parent.left) {
-                parent.left = deleteRoot(iter);
+    public boolean remove(K key) {
+        Node<K, V> node = find(key);
+        if (node == null) {
+            return false;
+        }
+        len--;
+        deleteNode(node);
+        return true;
+    }
+
+    private void deleteNode(Node<K, V> node) {
+        modCount++;
+        // with two children the successor entry moves up here and the successor node is unlinked instead
+        if (node.left != null && node.right != null) {
+            Node<K, V> minimum = node.right;
+            while (minimum.left != null) {
+                minimum = minimum.left;
+            }
+            node.entry = minimum.entry;
+            node = minimum;
+        }
+        shrinkPath(node.parent);
+
+        Node<K, V> replacement = node.left != null ? node.left : node.right;
+        if (replacement != null) {
+            replacement.parent = node.parent;
+            if (node.parent == null) {
+                root = replacement;
+            } else if (node == node.parent.left) {
+                node.parent.left = replacement;
+            } else {
+                node.parent.right = replacement;
+            }
+            node.left = node.right = node.parent = null;
+            if (node.color == BLACK) {
+                fixAfterDeletion(replacement);
+            }
+        } else if (node.parent == null) {
+            root = null;
+        } else {
+            // a leaf: fix the tree while it is still linked, it acts as the phantom double black node.
+            // It doesn't count anymore in the sizes recomputed by the rotations
+            node.size = 0;
+            if (node.color == BLACK) {
+                fixAfterDeletion(node);
+            }
+            if (node.parent != null) {
+                if (node == node.parent.left) {
+                    node.parent.left = null;
+                } else if (node == node.parent.right) {
+                    node.parent.right = null;
+                }
+                node.parent = null;
+            }
+        }
+    }
+
+    // CLRS delete fixup, 'node' carries an extra black
+    private void fixAfterDeletion(Node<K, V> node) {
+        while (node != root && Node.colorOf(node) == BLACK) {
+            if (node == Node.leftOf(Node.parentOf(node))) {
+                var sibling = Node.rightOf(Node.parentOf(node));
+                if (Node.colorOf(sibling) == RED) {
+                    Node.setColor(sibling, BLACK);
+                    Node.setColor(Node.parentOf(node), RED);
+                    rotateLeft(Node.parentOf(node));
+                    sibling = Node.rightOf(Node.parentOf(node));
+                }
+                if (Node.colorOf(Node.leftOf(sibling)) == BLACK && Node.colorOf(Node.rightOf(sibling)) == BLACK) {
+                    Node.setColor(sibling, RED);
+                    node = Node.parentOf(node);
+                } else {
+                    if (Node.colorOf(Node.rightOf(sibling)) == BLACK) {
+                        Node.setColor(Node.leftOf(sibling), BLACK);
+                        Node.setColor(sibling, RED);
+                        rotateRight(sibling);
+                        sibling = Node.rightOf(Node.parentOf(node));
+                    }
+                    Node.setColor(sibling, Node.colorOf(Node.parentOf(node)));
+                    Node.setColor(Node.parentOf(node), BLACK);
+                    Node.setColor(Node.rightOf(sibling), BLACK);
+                    rotateLeft(Node.parentOf(node));
+                    node = root;
+                }
             } else {
-                parent.right = deleteRoot(iter);
+                var sibling = Node.leftOf(Node.parentOf(node));
+                if (Node.colorOf(sibling) == RED) {
+                    Node.setColor(sibling, BLACK);
+                    Node.setColor(Node.parentOf(node), RED);
+                    rotateRight(Node.parentOf(node));
+                    sibling = Node.leftOf(Node.parentOf(node));
+                }
+                if (Node.colorOf(Node.rightOf(sibling)) == BLACK && Node.colorOf(Node.leftOf(sibling)) == BLACK) {
+                    Node.setColor(sibling, RED);
+                    node = Node.parentOf(node);
+                } else {
+                    if (Node.colorOf(Node.leftOf(sibling)) == BLACK) {
+                        Node.setColor(Node.rightOf(sibling), BLACK);
+                        Node.setColor(sibling, RED);
+                        rotateLeft(sibling);
+                        sibling = Node.leftOf(Node.parentOf(node));
+                    }
+                    Node.setColor(sibling, Node.colorOf(Node.parentOf(node)));
+                    Node.setColor(Node.parentOf(node), BLACK);
+                    Node.setColor(Node.leftOf(sibling), BLACK);
+                    rotateRight(Node.parentOf(node));
+                    node = root;
+                }
             }
         }
+        Node.setColor(node, BLACK);
+    }
 
-        return isRemoved;
+    public boolean contains(K key) {
+        return find(key) != null;
     }
 
-    private Node<K, V> deleteRoot(Node<K, V> root) {
-        if (root.left == null) {
-            return root.right;
-        } else if (root.right == null) {
-            return root.left;
-        } else {
-            Node<K, V> minimum = minDeconnection(root, root.right);
-            minimum.left = root.left;
-            minimum.right = root.right;
-            return minimum;
+    public V get(K key) {
+        var node = find(key);
+        return node == null ? null : node.entry.getValue();
+    }
+
+    // the entry with 'index' smaller keys before it, select(0) is the first one
+    public Entry<K, V> select(int index) {
+        if (index < 0 || index >= len) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        var iter = root;
+        while (true) {
+            int leftSize = Node.sizeOf(iter.left);
+            if (index < leftSize) {
+                iter = iter.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                iter = iter.right;
+            } else {
+                return iter.entry;
+            }
         }
     }
 
-    private Node<K, V> minDeconnection(Node<K, V> parent, Node<K, V> child) {
-        if(child.left == null) {
-            parent.right = child.right;
-            return child;
+    // number of keys < 'key', it doesn't need to be in the map
+    public int rank(K key) {
+        int rank = 0;
+        var iter = root;
+        while (iter != null) {
+            int compare = iter.entry.getKey().compareTo(key);
+            if (compare > 0) {
+                iter = iter.left;
+            } else if (compare < 0) {
+                rank += Node.sizeOf(iter.left) + 1;
+                iter = iter.right;
+            } else {
+                return rank + Node.sizeOf(iter.left);
+            }
         }
+        return rank;
+    }
 
-        while(child.left != null) {
-            child = child.left;
-            parent = parent.left;
+    // number of keys in [lo, hi), same bounds of subMap
+    public int countInRange(K lo, K hi) {
+        return Math.max(0, rank(hi) - rank(lo));
+    }
+
+    public Entry<K, V> first() {
+        if (root == null) {
+            return null;
+        }
+        var iter = root;
+        while (iter.left != null) {
+            iter = iter.left;
         }
-        parent.left = child.right;
-        return child;
+        return iter.entry;
     }
 
-    public boolean contains(K key) {
+    public Entry<K, V> last() {
         if (root == null) {
-            return false;
+            return null;
         }
         var iter = root;
-        while(iter != null) {
+        while (iter.right != null) {
+            iter = iter.right;
+        }
+        return iter.entry;
+    }
+
+    // greatest key <= 'key'
+    public Entry<K, V> floor(K key) {
+        return nearest(key, true, true);
+    }
+
+    // smallest key >= 'key'
+    public Entry<K, V> ceiling(K key) {
+        return nearest(key, false, true);
+    }
+
+    // greatest key < 'key'
+    public Entry<K, V> lower(K key) {
+        return nearest(key, true, false);
+    }
+
+    // smallest key > 'key'
+    public Entry<K, V> higher(K key) {
+        return nearest(key, false, false);
+    }
+
+    // single descent, remembering the last node seen on the right side of 'key'
+    private Entry<K, V> nearest(K key, boolean below, boolean inclusive) {
+        Entry<K, V> best = null;
+        var iter = root;
+        while (iter != null) {
             int compare = iter.entry.getKey().compareTo(key);
-            if (compare > 0) {
+            if (compare == 0 && inclusive) {
+                return iter.entry;
+            }
+            if (below ? compare < 0 : compare > 0) {
+                best = iter.entry;
+                iter = below ? iter.right : iter.left;
+            } else {
+                iter = below ? iter.left : iter.right;
+            }
+        }
+        return best;
+    }
+
+    // lazy in order visit of the keys in [from, to), a null bound leaves that side open.
+    // The iterator seeks 'from' in O(log n) and stops at 'to', so a scan costs O(log n + k)
+    public Iterable<Entry<K, V>> subMap(K from, K to) {
+        return new Iterable<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    Stack<Node<K, V>> stack = seek(from);
+
+                    @Override
+                    public boolean hasNext() {
+                        return !stack.isEmpty() && (to == null || stack.peek().entry.getKey().compareTo(to) < 0);
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        Node<K, V> current = stack.pop();
+                        for (var iter = current.right; iter != null; iter = iter.left) {
+                            stack.push(iter);
+                        }
+                        return current.entry;
+                    }
+                };
+            }
+        };
+    }
+
+    // keys < 'to'
+    public Iterable<Entry<K, V>> headMap(K to) {
+        return subMap(null, to);
+    }
+
+    // keys >= 'from'
+    public Iterable<Entry<K, V>> tailMap(K from) {
+        return subMap(from, null);
+    }
+
+    // the stack holds the nodes >= 'from' whose left subtree still has to be visited, the smallest on top
+    private Stack<Node<K, V>> seek(K from) {
+        Stack<Node<K, V>> stack = new Stack<>();
+        var iter = root;
+        while (iter != null) {
+            if (from == null || iter.entry.getKey().compareTo(from) >= 0) {
+                stack.push(iter);
                 iter = iter.left;
-            } else if (compare < 0) {
-                iter = iter.right;
             } else {
-                return true;
+                iter = iter.right;
             }
         }
-        return false;
+        return stack;
+    }
+
+    // returns the black height, -1 if a red-black property is broken
+    private static int assertRedBlackProperties(Node<?, ?> root) {
+        if (root == null) {
+            return 0;
+        }
+        if (root.color == RED && (Node.colorOf(root.left) == RED || Node.colorOf(root.right) == RED)) {
+            return -1;
+        }
+        int left = assertRedBlackProperties(root.left);
+        int right = assertRedBlackProperties(root.right);
+        if (left < 0 || left != right) {
+            return -1;
+        }
+        return left + (root.color == BLACK ? 1 : 0);
+    }
+
+    private static <E> E nextOrNull(Iterator<E> iter) {
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    // the other map keys are of a super type of K, so they can always be compared with ours.
+    // The wildcards don't let the compiler see it
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Object theirs, Object mine) {
+        return ((Comparable<Object>) theirs).compareTo(mine);
+    }
+
+    // level of the nodes colored red in a tree built from 'size' sorted entries: the last one, if it isn't full
+    private static int redLevel(int size) {
+        return 31 - Integer.numberOfLeadingZeros(size + 1);
+    }
+
+    // O(n) build of a perfectly balanced tree, every level is black except for an incomplete last one
+    private static <_K extends Comparable<? super _K>, _V> TreeMap<_K, _V> fromSorted(ArrayList<Entry<? extends _K, ? extends _V>> sorted) {
+        TreeMap<_K, _V> tree = new TreeMap<>();
+        tree.root = buildFromSorted(sorted, 0, sorted.size() - 1, 0, redLevel(sorted.size()), null);
+        tree.len = sorted.size();
+        return tree;
+    }
+
+    private static <_K extends Comparable<? super _K>, _V> Node<_K, _V> buildFromSorted(ArrayList<Entry<? extends _K, ? extends _V>> sorted, int lo, int hi, int level, int redLevel, Node<_K, _V> parent) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        var entry = sorted.get(mid);
+        Node<_K, _V> node = new Node<>(entry.getKey(), entry.getValue(), parent);
+        node.color = level == redLevel ? RED : BLACK;
+        node.size = hi - lo + 1;
+        node.left = buildFromSorted(sorted, lo, mid - 1, level + 1, redLevel, node);
+        node.right = buildFromSorted(sorted, mid + 1, hi, level + 1, redLevel, node);
+        return node;
     }
 
+    // the set operations merge the two in order visits in a single pass, then build the result in O(n)
     public TreeMap<K, V> intersect(TreeMap<? super K, ?> other) {
-        TreeMap<K, V> intersection = new TreeMap<>();
-        for(Entry<K, V> entry : this){
-            if(other.contains(entry.getKey())) {
-                intersection.add(entry.getKey(), entry.getValue());
+        ArrayList<Entry<? extends K, ? extends V>> intersection = new ArrayList<>();
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        var b = nextOrNull(theirs);
+        while (a != null && b != null) {
+            int compare = compareKeys(b.getKey(), a.getKey());
+            if (compare > 0) {
+                a = nextOrNull(mine);
+            } else if (compare < 0) {
+                b = nextOrNull(theirs);
+            } else {
+                intersection.add(a);
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
             }
         }
-        return intersection;
+        return fromSorted(intersection);
     }
 
+    // on common keys the value of this map wins
     public TreeMap<K, V> union(TreeMap<? extends K, ? extends V> other) {
-        TreeMap<K, V> unions = new TreeMap<>();
-        for(Entry<K, V> entry : this){
-            unions.add(entry.getKey(), entry.getValue());
-        }
-        for(Entry<? extends K, ? extends V> entry : other){
-            unions.add(entry.getKey(), entry.getValue());
+        ArrayList<Entry<? extends K, ? extends V>> unions = new ArrayList<>();
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        Entry<? extends K, ? extends V> b = nextOrNull(theirs);
+        while (a != null || b != null) {
+            int compare = a == null ? 1 : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            if (compare < 0) {
+                unions.add(a);
+                a = nextOrNull(mine);
+            } else if (compare > 0) {
+                unions.add(b);
+                b = nextOrNull(theirs);
+            } else {
+                unions.add(a);
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
+            }
         }
-        return unions;
+        return fromSorted(unions);
     }
 
     public TreeMap<K, V> difference(TreeMap<? super K, ?> other) {
-        TreeMap<K, V> differences = new TreeMap<>();
-        for (Entry<K, V> entry : this) {
-            if(!other.contains(entry.getKey())) {
-                differences.add(entry.getKey(), entry.getValue());
+        ArrayList<Entry<? extends K, ? extends V>> differences = new ArrayList<>();
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        var b = nextOrNull(theirs);
+        while (a != null) {
+            int compare = b == null ? 1 : compareKeys(b.getKey(), a.getKey());
+            if (compare > 0) {
+                differences.add(a);
+                a = nextOrNull(mine);
+            } else if (compare < 0) {
+                b = nextOrNull(theirs);
+            } else {
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
             }
         }
-        return differences;
+        return fromSorted(differences);
     }
 
     // ask Faella
     // Can't generalize TreeMap K any further, I need both '? super' and '? extends' hence I'm stuck with only K
     public TreeMap<K, V> symmetricalDifference(TreeMap<K, ? extends V> other) {
-        TreeMap<K, V> symDiff = new TreeMap<K, V>();
-        for (var entry : this) {
-            if (!other.contains(entry.getKey())) {
-                symDiff.add(entry.getKey(), entry.getValue());
-            }
-        }
-        for (var entry : other) {
-            if(!contains(entry.getKey())) {
-                symDiff.add(entry.getKey(), entry.getValue());
+        ArrayList<Entry<? extends K, ? extends V>> symDiff = new ArrayList<>();
+        Iterator<Entry<K, V>> mine = iterator();
+        var theirs = other.iterator();
+        Entry<K, V> a = nextOrNull(mine);
+        Entry<K, ? extends V> b = nextOrNull(theirs);
+        while (a != null || b != null) {
+            int compare = a == null ? 1 : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            if (compare < 0) {
+                symDiff.add(a);
+                a = nextOrNull(mine);
+            } else if (compare > 0) {
+                symDiff.add(b);
+                b = nextOrNull(theirs);
+            } else {
+                a = nextOrNull(mine);
+                b = nextOrNull(theirs);
             }
         }
-
-        return symDiff;
+        return fromSorted(symDiff);
     }
 
+    // the keys don't change, so the mapped tree has the same shape and colors of this one
     public <U> TreeMap<K, U> map(Function<? super V, ? extends U> f) {
         TreeMap<K, U> mapped = new TreeMap<>();
-        for (Entry<K, V> entry : this) {
-            mapped.add(entry.getKey(), f.apply(entry.getValue()));
+        mapped.root = mapNode(root, f);
+        mapped.len = len;
+        return mapped;
+    }
+
+    // in order, so 'f' is applied in the same order of the iterator
+    private static <_K extends Comparable<? super _K>, _V, _U> Node<_K, _U> mapNode(Node<_K, _V> node, Function<? super _V, ? extends _U> f) {
+        if (node == null) {
+            return null;
+        }
+        Node<_K, _U> left = mapNode(node.left, f);
+        Node<_K, _U> mapped = new Node<>(node.entry.getKey(), f.apply(node.entry.getValue()), null);
+        mapped.color = node.color;
+        mapped.size = node.size;
+        mapped.left = left;
+        mapped.right = mapNode(node.right, f);
+        if (mapped.left != null) {
+            mapped.left.parent = mapped;
+        }
+        if (mapped.right != null) {
+            mapped.right.parent = mapped;
         }
         return mapped;
     }
@@ -414,23 +1041,23 @@ public class TreeMap<K extends Comparable<? super K>, V> implements Iterable<Ent
     }
 
     public TreeMap<K, V> filterByKeys(Predicate<? super K> p) {
-        TreeMap<K, V> filtered = new TreeMap<>();
+        ArrayList<Entry<? extends K, ? extends V>> filtered = new ArrayList<>();
         for (Entry<K, V> entry : this) {
             if(p.test(entry.getKey())) {
-                filtered.add(entry.getKey(), entry.getValue());
+                filtered.add(entry);
             }
         }
-        return filtered;
+        return fromSorted(filtered);
     }
 
     public TreeMap<K, V> filterByValues(Predicate<? super V> p) {
-        TreeMap<K, V> filtered = new TreeMap<>();
+        ArrayList<Entry<? extends K, ? extends V>> filtered = new ArrayList<>();
         for (Entry<K, V> entry : this) {
             if(p.test(entry.getValue())) {
-                filtered.add(entry.getKey(), entry.getValue());
+                filtered.add(entry);
             }
         }
-        return filtered;
+        return fromSorted(filtered);
     }
 
     public <U> U reduce(BiFunction<? super Entry<? extends K, ? extends V>, ? super U, ? extends U> reducer, U initial ) {
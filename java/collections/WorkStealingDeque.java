@@ -0,0 +1,186 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Chase-Lev deque: a single owner pushes and pops at the bottom like a Stack, any number of thieves steal
+// at the top like a Queue. The owner never locks nor CASes, except to take the last element that a thief
+// may want too; thieves race among themselves with a CAS on 'top'. The elements live in a circular array
+// indexed by the ever growing top/bottom counters, the owner replaces it with one twice as big when full
+public class WorkStealingDeque<T> {
+    private static final int DEFAULT_SIZE = 1 << 6;
+
+    private static final class CircularArray<_T> {
+        final AtomicReferenceArray<_T> items;
+        final int mask;
+
+        CircularArray(int size) {
+            items = new AtomicReferenceArray<>(size);
+            mask = size - 1;
+        }
+
+        int size() {
+            return mask + 1;
+        }
+
+        _T get(long index) {
+            return items.get((int) index & mask);
+        }
+
+        void set(long index, _T el) {
+            items.set((int) index & mask, el);
+        }
+
+        // the elements in [top, bottom) at the same indexes in an array twice as big
+        CircularArray<_T> grow(long top, long bottom) {
+            var bigger = new CircularArray<_T>(size() << 1);
+            for (long i = top; i < bottom; i++) {
+                bigger.set(i, get(i));
+            }
+            return bigger;
+        }
+    }
+
+    private final AtomicLong top = new AtomicLong(); // next to steal
+    private volatile long bottom; // next free slot, written only by the owner
+    private volatile CircularArray<T> array = new CircularArray<>(DEFAULT_SIZE);
+    private long cleared; // owner only, the stolen elements below it are no longer referenced by the array
+
+    public static void main(String[] args) throws InterruptedException {
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        for (int i = 0; i < 5; i++) {
+            deque.push(i);
+        }
+        System.out.println("pop => " + deque.pop() + "\tsteal => " + deque.steal() + "\tsize => " + deque.size());
+        while (!deque.isEmpty()) {
+            System.out.println("Popped => " + deque.pop());
+        }
+        System.out.println("is empty => " + deque.isEmpty() + "\tpop => " + deque.pop() + "\tsteal => " + deque.steal());
+        System.out.println();
+
+        // the owner pushes in bursts and pops, the thieves steal: every element has to be taken exactly once
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int thieves = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        WorkStealingDeque<Integer> shared = new WorkStealingDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        AtomicInteger stolen = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        Thread[] workers = new Thread[thieves];
+        for (int t = 0; t < thieves; t++) {
+            workers[t] = new Thread(() -> {
+                while (done.get() < n) {
+                    Integer el = shared.steal();
+                    if (el == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    taken.incrementAndGet(el);
+                    stolen.incrementAndGet();
+                    done.incrementAndGet();
+                }
+            });
+            workers[t].start();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            shared.push(i);
+            if ((i & 7) == 7) {
+                for (int j = 0; j < 3; j++) {
+                    Integer el = shared.pop();
+                    if (el != null) {
+                        taken.incrementAndGet(el);
+                        done.incrementAndGet();
+                    }
+                }
+            }
+        }
+        Integer el;
+        while ((el = shared.pop()) != null) {
+            taken.incrementAndGet(el);
+            done.incrementAndGet();
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        boolean once = true;
+        for (int i = 0; i < n; i++) {
+            once &= taken.get(i) == 1;
+        }
+        System.out.println(n + " elements, " + thieves + " thieves took " + (System.nanoTime() - start) / 1e6 + "ms, each taken exactly once => " + once
+            + "\tstolen => " + stolen.get());
+    }
+
+    // a snapshot, it can be stale by the time it is returned
+    public int size() {
+        return (int) Math.max(0, bottom - top.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // owner only
+    public void push(T el) {
+        long b = bottom;
+        long t = top.get();
+        var a = array;
+        if (b - t >= a.size()) {
+            a = a.grow(t, b);
+            array = a;
+            cleared = t;
+        }
+        clearStolen(a, t, b);
+        a.set(b, el);
+        // the volatile write publishes the element to the thieves that read 'bottom'
+        bottom = b + 1;
+    }
+
+    // the thieves leave the slots they steal from as they are, once 'top' moved a push may reuse one even with
+    // the same reference. The slots of [cleared, top) still hold stolen elements, except the ones before
+    // bottom - size that a push already reused
+    private void clearStolen(CircularArray<T> a, long t, long b) {
+        for (long i = Math.max(cleared, b - a.size()); i < t; i++) {
+            a.set(i, null);
+        }
+        cleared = t;
+    }
+
+    // owner only, the most recently pushed element or null when empty
+    public T pop() {
+        long b = bottom - 1;
+        var a = array;
+        // claim the slot before looking at 'top', a thief reading 'bottom' from now on won't go past it
+        bottom = b;
+        long t = top.get();
+        if (t > b) {
+            bottom = b + 1;
+            return null;
+        }
+        T el = a.get(b);
+        if (t < b) {
+            a.set(b, null);
+            return el;
+        }
+        // the last element, the thieves may be after it too: whoever moves 'top' first gets it
+        boolean won = top.compareAndSet(t, t + 1);
+        bottom = b + 1;
+        if (!won) {
+            return null;
+        }
+        a.set(b, null);
+        return el;
+    }
+
+    // any thread, the oldest element or null when empty or when another thread took it first
+    public T steal() {
+        long t = top.get();
+        long b = bottom;
+        if (t >= b) {
+            return null;
+        }
+        var a = array;
+        T el = a.get(t);
+        // the owner clears the slot on a later push
+        return top.compareAndSet(t, t + 1) ? el : null;
+    }
+}